@@ -0,0 +1,262 @@
+package com.example.imageservice.cache;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.service.ImageLifecycleListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Byte-bounded cache of hot image files held in direct (off-heap) buffers.
+ * <p>
+ * Eviction follows W-TinyLFU: new entries enter a small LRU window (1% of capacity); entries
+ * leaving the window compete for a place in the main segmented LRU (probation plus an 80%
+ * protected segment) and are only admitted if a frequency sketch says they are accessed more
+ * often than the main segment's eviction victim. This keeps one-off downloads from flushing the
+ * images the viewers keep cycling through. The same check runs before a missed file is read,
+ * so a file that would be rejected is never loaded at all.
+ * <p>
+ * All bookkeeping runs under one monitor; the buffers handed out are read-only views, so
+ * serving from them needs no lock.
+ */
+@Component
+public class HotFileCache implements ImageLifecycleListener {
+    /** Counters for monitoring. */
+    public record Stats(long hits, long misses, long evictions, long rejections, long entries, long bytes,
+                        long capacityBytes) {}
+
+    private final long capacity;
+    private final long maxEntryBytes;
+    private final long windowCapacity;
+    private final long protectedCapacity;
+    private final FrequencySketch sketch;
+
+    // Access-ordered LRU segments, eldest first
+    private final LinkedHashMap<String, ByteBuffer> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    public HotFileCache(@Value("${imageservice.cache.capacity-bytes:67108864}") long capacity,
+                        @Value("${imageservice.cache.max-entry-bytes:4194304}") long maxEntryBytes) {
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.maxEntryBytes = Math.min(maxEntryBytes, capacity - windowCapacity);
+        this.protectedCapacity = (capacity - windowCapacity) * 8 / 10;
+        // Assume roughly 64 KiB per image when sizing the sketch
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1, capacity >> 16)));
+    }
+
+    /**
+     * Return the cached body of a file. On a miss the file is read into the cache only if the
+     * frequency sketch says it will be admitted; otherwise nothing is read and the caller
+     * serves the file from disk.
+     * @param path File to serve
+     * @param size File size from metadata
+     * @return Read-only buffer holding the whole file, or null if the file is not worth caching
+     */
+    public ByteBuffer getOrLoad(Path path, long size) throws IOException {
+        String key = path.toString();
+        ByteBuffer cached = get(key);
+        if (cached != null || size > maxEntryBytes || !worthLoading(key, size)) {
+            return cached;
+        }
+        ByteBuffer view = read(path, size);
+        put(key, view);
+        return view;
+    }
+
+    /**
+     * Read a file into the cache ahead of demand, skipping the frequency check; for callers
+     * that know the file is about to be requested, such as the playlist prefetch.
+     */
+    public void preload(Path path, long size) throws IOException {
+        String key = path.toString();
+        if (size > maxEntryBytes || isCached(key)) {
+            return;
+        }
+        put(key, read(path, size));
+    }
+
+    public synchronized ByteBuffer get(String key) {
+        sketch.increment(key);
+        ByteBuffer buffer = window.get(key);
+        if (buffer == null) {
+            buffer = protectedSegment.get(key);
+        }
+        if (buffer == null) {
+            buffer = probation.remove(key);
+            if (buffer != null) {
+                // Second hit in main space: promote, demoting protected LRU entries if needed
+                probationBytes -= buffer.capacity();
+                protectedSegment.put(key, buffer);
+                protectedBytes += buffer.capacity();
+                demoteProtected();
+            }
+        }
+        if (buffer == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return buffer;
+    }
+
+    public synchronized void put(String key, ByteBuffer buffer) {
+        long weight = buffer.capacity();
+        if (weight > maxEntryBytes || contains(key)) {
+            return;
+        }
+        window.put(key, buffer);
+        windowBytes += weight;
+        Iterator<Map.Entry<String, ByteBuffer>> it = window.entrySet().iterator();
+        while (windowBytes > windowCapacity && it.hasNext()) {
+            Map.Entry<String, ByteBuffer> candidate = it.next();
+            it.remove();
+            windowBytes -= candidate.getValue().capacity();
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        ByteBuffer removed = window.remove(key);
+        if (removed != null) {
+            windowBytes -= removed.capacity();
+            return;
+        }
+        removed = probation.remove(key);
+        if (removed != null) {
+            probationBytes -= removed.capacity();
+            return;
+        }
+        removed = protectedSegment.remove(key);
+        if (removed != null) {
+            protectedBytes -= removed.capacity();
+        }
+    }
+
+    @Override
+    public void imageDeleted(Image image, ImageMetadata metadata) {
+        invalidate(Path.of(image.getPath()).toString());
+    }
+
+    @Override
+    public void imageMoved(Image from, Image to) {
+        invalidate(Path.of(from.getPath()).toString());
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, rejections,
+                window.size() + probation.size() + protectedSegment.size(),
+                windowBytes + probationBytes + protectedBytes, capacity);
+    }
+
+    /**
+     * Whether a missed file would stay in the cache once read: it must have been asked for
+     * before (one-off downloads would only churn the window), and must either fit in main space
+     * or be requested more often than the entry it would displace there.
+     */
+    private synchronized boolean worthLoading(String key, long size) {
+        int frequency = sketch.frequency(key);
+        if (frequency > 1) {
+            if (probationBytes + protectedBytes + size <= capacity - windowCapacity) {
+                return true;
+            }
+            String victim = victimKey();
+            if (victim != null && frequency > sketch.frequency(victim)) {
+                return true;
+            }
+        }
+        rejections++;
+        return false;
+    }
+
+    private synchronized boolean isCached(String key) {
+        return contains(key);
+    }
+
+    private static ByteBuffer read(Path path, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Move a window evictee into probation if it fits or beats the main space's victims.
+     */
+    private void admit(String key, ByteBuffer candidate) {
+        long weight = candidate.capacity();
+        long mainCapacity = capacity - windowCapacity;
+        if (probationBytes + protectedBytes + weight > mainCapacity) {
+            String victim = victimKey();
+            if (victim == null || sketch.frequency(key) <= sketch.frequency(victim)) {
+                rejections++;
+                return;
+            }
+            while (probationBytes + protectedBytes + weight > mainCapacity && evictOne()) {
+                evictions++;
+            }
+        }
+        probation.put(key, candidate);
+        probationBytes += weight;
+    }
+
+    private String victimKey() {
+        if (!probation.isEmpty()) {
+            return probation.keySet().iterator().next();
+        }
+        return protectedSegment.isEmpty() ? null : protectedSegment.keySet().iterator().next();
+    }
+
+    private boolean evictOne() {
+        LinkedHashMap<String, ByteBuffer> segment = !probation.isEmpty() ? probation : protectedSegment;
+        Iterator<Map.Entry<String, ByteBuffer>> it = segment.entrySet().iterator();
+        if (!it.hasNext()) {
+            return false;
+        }
+        long weight = it.next().getValue().capacity();
+        it.remove();
+        if (segment == probation) {
+            probationBytes -= weight;
+        } else {
+            protectedBytes -= weight;
+        }
+        return true;
+    }
+
+    private void demoteProtected() {
+        Iterator<Map.Entry<String, ByteBuffer>> it = protectedSegment.entrySet().iterator();
+        while (protectedBytes > protectedCapacity && it.hasNext()) {
+            Map.Entry<String, ByteBuffer> eldest = it.next();
+            it.remove();
+            protectedBytes -= eldest.getValue().capacity();
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationBytes += eldest.getValue().capacity();
+        }
+    }
+
+    private boolean contains(String key) {
+        return window.containsKey(key) || probation.containsKey(key) || protectedSegment.containsKey(key);
+    }
+}
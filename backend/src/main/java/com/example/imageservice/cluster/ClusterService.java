@@ -0,0 +1,348 @@
+package com.example.imageservice.cluster;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.persistence.ImageRecord;
+import com.example.imageservice.service.ImageLifecycleListener;
+import com.example.imageservice.service.ImageService;
+import com.example.imageservice.storage.BlobStore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cluster mode: several instances behind one load balancer, each serving every image.
+ * <p>
+ * Peers come from static configuration. Every change made on this node (upload, delete, metadata
+ * update) is sent to every peer by a {@link PeerLink}, and every peer applies it through its own
+ * image service, which announces it to its own SSE subscribers; a client therefore sees changes
+ * made on any node. Changes received from a peer are not passed on, so the nodes form a full mesh.
+ * Concurrent edits of one image on different nodes are resolved by arrival order.
+ * <p>
+ * Image bytes are not replicated. An image's metadata names the node it was uploaded to as its
+ * owner, and another node copies the file from there the first time it is needed.
+ */
+@Service
+public class ClusterService implements ImageLifecycleListener {
+    private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+    static final String SECRET_HEADER = "X-Cluster-Secret";
+    private static final int SNAPSHOT_PAGE = 1000;
+    // Deleted ids remembered so a late snapshot from another node does not bring them back
+    private static final int RECENT_DELETES = 10_000;
+
+    // Set while applying a peer's change, whose lifecycle callbacks must not be sent back out
+    private static final ThreadLocal<Boolean> applying = ThreadLocal.withInitial(() -> false);
+
+    @Autowired
+    @Lazy
+    ImageService imageService; // package-private for test injection
+    @Value("${imageservice.cluster.node-url:}")
+    String nodeUrl = ""; // package-private for test injection
+    @Value("${imageservice.cluster.peers:}")
+    List<String> peerUrls = List.of(); // package-private for test injection
+    @Value("${imageservice.cluster.secret:}")
+    String secret = ""; // package-private for test injection
+    @Value("${imageservice.cluster.queue-capacity:100000}")
+    int queueCapacity = 100_000; // package-private for test injection
+    @Value("${imageservice.cluster.retry-millis:1000}")
+    long retryMillis = 1000; // package-private for test injection
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+    private final Map<String, PeerLink> links = new LinkedHashMap<>();
+    // When each replica was last confirmed by its owner, for dropping the ones a snapshot omits
+    private final Map<String, Long> confirmed = new ConcurrentHashMap<>();
+    private final Set<String> recentlyDeleted = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > RECENT_DELETES;
+                }
+            }));
+
+    @PostConstruct
+    public void start() {
+        String self = normalize(nodeUrl);
+        for (String peer : peerUrls) {
+            String url = normalize(peer);
+            // The same peer list can be given to every node
+            if (!url.isEmpty() && !url.equals(self) && !links.containsKey(url)) {
+                links.put(url, new PeerLink(url, transport(), queueCapacity, retryMillis));
+            }
+        }
+        if (links.isEmpty()) {
+            return;
+        }
+        if (self.isEmpty()) {
+            throw new IllegalStateException("imageservice.cluster.node-url must be set when peers are configured");
+        }
+        if (secret.isEmpty()) {
+            // Without it anyone could post changes that point replicas at arbitrary files
+            throw new IllegalStateException("imageservice.cluster.secret must be set when peers are configured");
+        }
+        nodeUrl = self;
+        log.info("Cluster mode: this node is {}, peers {}", self, links.keySet());
+        links.values().forEach(PeerLink::start);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        links.values().forEach(PeerLink::stop);
+    }
+
+    public boolean isEnabled() {
+        return !links.isEmpty();
+    }
+
+    /**
+     * Whether an image with this owner has its file on another node.
+     */
+    public boolean isRemote(String owner) {
+        return owner != null && isEnabled() && !owner.equals(nodeUrl);
+    }
+
+    /**
+     * Whether the URL is one of the configured peers.
+     */
+    public boolean isPeer(String url) {
+        return url != null && links.containsKey(url);
+    }
+
+    /**
+     * Whether a request to the internal endpoints carries the configured secret.
+     */
+    public boolean isAuthorized(String presented) {
+        return !secret.isEmpty() && presented != null && MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ClusterStatus status() {
+        List<ClusterStatus.Peer> peers = new ArrayList<>();
+        for (PeerLink link : links.values()) {
+            peers.add(link.status());
+        }
+        return new ClusterStatus(isEnabled(), isEnabled() ? nodeUrl : null, peers);
+    }
+
+    @Override
+    public void imageSaved(Image image, ImageMetadata metadata) {
+        broadcast(image, metadata, false);
+    }
+
+    @Override
+    public void metadataUpdated(Image image, ImageMetadata metadata) {
+        broadcast(image, metadata, false);
+    }
+
+    @Override
+    public void imageDeleted(Image image, ImageMetadata metadata) {
+        recentlyDeleted.add(image.getId());
+        confirmed.remove(image.getId());
+        broadcast(image, metadata, true);
+    }
+
+    /**
+     * Apply changes a peer made, in order.
+     */
+    public void apply(List<ImageRecord> changes) {
+        applying.set(true);
+        try {
+            for (ImageRecord change : changes) {
+                if (!Image.isValidId(change.id())) {
+                    log.warn("Ignoring change to malformed image id from a peer");
+                    continue;
+                }
+                if (change.deleted()) {
+                    recentlyDeleted.add(change.id());
+                    confirmed.remove(change.id());
+                    imageService.deleteImage(change.id());
+                } else {
+                    applyPut(change, System.currentTimeMillis());
+                }
+            }
+        } finally {
+            applying.set(false);
+        }
+    }
+
+    /**
+     * Apply one page of a peer's snapshot. After the last page, replicas of that peer's images
+     * that the snapshot did not mention are deleted.
+     */
+    public void applySnapshot(SyncBatch batch) {
+        applying.set(true);
+        try {
+            for (ImageRecord record : batch.records()) {
+                applyPut(record, batch.started());
+            }
+            if (batch.complete()) {
+                int dropped = 0;
+                for (Image image : imageService.getAllImages()) {
+                    ImageMetadata metadata = imageService.getImageMetadata(image.getId());
+                    if (metadata != null && batch.owner().equals(metadata.getOwner())
+                            && confirmed.getOrDefault(image.getId(), 0L) < batch.started()) {
+                        imageService.deleteImage(image.getId());
+                        confirmed.remove(image.getId());
+                        dropped++;
+                    }
+                }
+                log.info("Synchronized with {}: {} images, {} stale replicas dropped",
+                        batch.owner(), imageService.getAllImages().size(), dropped);
+            }
+        } finally {
+            applying.set(false);
+        }
+    }
+
+    /**
+     * Open an image's file on the node that owns it.
+     */
+    public InputStream fetch(String owner, String id) throws IOException {
+        if (!isPeer(owner) || !Image.isValidId(id)) {
+            throw new IOException("Image " + id + " is not owned by a configured peer");
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(owner + "/api/images/" + id + "/file"))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        HttpResponse<InputStream> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching image " + id + " from " + owner, e);
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Fetching image " + id + " from " + owner + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private void applyPut(ImageRecord record, long confirmedAt) {
+        if (record.image() == null || record.metadata() == null || recentlyDeleted.contains(record.id())) {
+            return;
+        }
+        String owner = record.metadata().getOwner();
+        String sha256 = record.metadata().getSha256();
+        // Ids and hashes end up in file paths, and owners are fetched from
+        if (!Image.isValidId(record.id()) || !record.id().equals(record.image().getId())
+                || (sha256 != null && !BlobStore.isHash(sha256))
+                || (isRemote(owner) && !isPeer(owner))) {
+            log.warn("Ignoring malformed image record from a peer");
+            return;
+        }
+        boolean mine = !isRemote(owner);
+        if (mine && imageService.getImage(record.id()) == null) {
+            // Our own image, deleted here after the peer sent this; nothing to put back
+            return;
+        }
+        if (mine) {
+            // Edited on the peer; the file is here, so this node stays its owner
+            record.metadata().setOwner(null);
+        } else {
+            confirmed.merge(record.id(), confirmedAt, Math::max);
+        }
+        imageService.putReplica(record.image(), record.metadata());
+    }
+
+    private void broadcast(Image image, ImageMetadata metadata, boolean deleted) {
+        if (!isEnabled() || applying.get()) {
+            return;
+        }
+        ImageRecord change = new ImageRecord(image.getId(), image, withOwner(metadata), deleted);
+        for (PeerLink link : links.values()) {
+            link.enqueue(change);
+        }
+    }
+
+    private ImageMetadata withOwner(ImageMetadata metadata) {
+        if (metadata == null || metadata.getOwner() != null) {
+            return metadata;
+        }
+        ImageMetadata owned = new ImageMetadata(metadata);
+        owned.setOwner(nodeUrl);
+        return owned;
+    }
+
+    private PeerLink.Transport transport() {
+        return new PeerLink.Transport() {
+            @Override
+            public void send(String peer, List<ImageRecord> changes) throws Exception {
+                post(peer + "/api/cluster/changes", changes);
+            }
+
+            @Override
+            public void sync(String peer) throws Exception {
+                // A snapshot of a half-loaded index would make the peer drop images
+                while (!imageService.getIndexStatus().ready()) {
+                    Thread.sleep(100);
+                }
+                long started = System.currentTimeMillis();
+                List<ImageRecord> page = new ArrayList<>(SNAPSHOT_PAGE);
+                for (Image image : imageService.getAllImages()) {
+                    ImageMetadata metadata = imageService.getImageMetadata(image.getId());
+                    if (metadata == null || isRemote(metadata.getOwner())) {
+                        continue;
+                    }
+                    page.add(new ImageRecord(image.getId(), image, withOwner(metadata)));
+                    if (page.size() == SNAPSHOT_PAGE) {
+                        post(peer + "/api/cluster/sync", new SyncBatch(nodeUrl, started, false, page));
+                        page = new ArrayList<>(SNAPSHOT_PAGE);
+                    }
+                }
+                post(peer + "/api/cluster/sync", new SyncBatch(nodeUrl, started, true, page));
+            }
+
+            @Override
+            public boolean inSnapshot(ImageRecord change) {
+                return change.metadata() == null || nodeUrl.equals(change.metadata().getOwner());
+            }
+        };
+    }
+
+    private void post(String url, Object body) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+        if (!secret.isEmpty()) {
+            request.header(SECRET_HEADER, secret);
+        }
+        HttpResponse<Void> response = http.send(request.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(url + " returned " + response.statusCode());
+        }
+    }
+
+    private static String normalize(String url) {
+        return url == null ? "" : url.trim().replaceAll("/+$", "");
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.imageservice.cluster;
+
+import java.util.List;
+
+/**
+ * State of cluster replication as seen from this node. {@code enabled} is false when no peers are
+ * configured.
+ */
+public record ClusterStatus(boolean enabled, String node, List<Peer> peers) {
+    /**
+     * One peer link: whether the last attempt reached it, changes waiting to be sent, changes
+     * sent so far and failed attempts.
+     */
+    public record Peer(String url, boolean reachable, int queued, long sent, long failures) {}
+}
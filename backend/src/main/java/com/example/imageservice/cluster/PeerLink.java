@@ -0,0 +1,125 @@
+package com.example.imageservice.cluster;
+
+import com.example.imageservice.config.ExecutionMode;
+import com.example.imageservice.persistence.ImageRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends this node's changes to one peer, in order, from a single background thread.
+ * <p>
+ * Changes are queued and posted in batches; a failed batch is kept and retried with exponential
+ * backoff. After startup, after the peer has been unreachable (it may have restarted with less
+ * than it had) and after the queue overflowed, the link first sends a full snapshot of the images
+ * this node owns. Queued changes to those images are dropped then, since the snapshot is newer;
+ * changes this node made to other nodes' images are still sent. An overflow loses those.
+ */
+class PeerLink {
+    private static final Logger log = LoggerFactory.getLogger(PeerLink.class);
+    static final int BATCH_SIZE = 256;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /** How the link talks to its peer; throws on any failure. */
+    interface Transport {
+        void send(String peer, List<ImageRecord> changes) throws Exception;
+
+        void sync(String peer) throws Exception;
+
+        /** Whether a snapshot carries the change, i.e. it is to an image this node owns. */
+        boolean inSnapshot(ImageRecord change);
+    }
+
+    private final String url;
+    private final Transport transport;
+    private final long retryMillis;
+    private final BlockingDeque<ImageRecord> queue;
+    private final Thread thread;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean needsSync = true;
+    private volatile boolean reachable;
+    private volatile boolean running = true;
+
+    PeerLink(String url, Transport transport, int capacity, long retryMillis) {
+        this.url = url;
+        this.transport = transport;
+        this.retryMillis = retryMillis;
+        this.queue = new LinkedBlockingDeque<>(capacity);
+        this.thread = ExecutionMode.daemonThreads("cluster-link-").newThread(this::run);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void enqueue(ImageRecord change) {
+        if (!queue.offerLast(change)) {
+            queue.clear();
+            needsSync = true;
+        }
+    }
+
+    ClusterStatus.Peer status() {
+        return new ClusterStatus.Peer(url, reachable, queue.size(), sent.get(), failures.get());
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        long backoff = retryMillis;
+        List<ImageRecord> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                if (needsSync) {
+                    needsSync = false;
+                    // Anything queued so far has been applied locally, so the snapshot includes it
+                    batch.removeIf(transport::inSnapshot);
+                    queue.removeIf(transport::inSnapshot);
+                    transport.sync(url);
+                } else if (batch.isEmpty()) {
+                    ImageRecord first = queue.pollFirst(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                }
+                if (!batch.isEmpty()) {
+                    transport.send(url, batch);
+                    sent.addAndGet(batch.size());
+                    batch.clear();
+                }
+                if (!reachable) {
+                    log.info("Cluster peer {} is reachable", url);
+                }
+                reachable = true;
+                backoff = retryMillis;
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                if (reachable) {
+                    log.warn("Cluster peer {} is unreachable: {}", url, e.toString());
+                }
+                reachable = false;
+                needsSync = true;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+}
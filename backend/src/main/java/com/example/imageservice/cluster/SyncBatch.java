@@ -0,0 +1,14 @@
+package com.example.imageservice.cluster;
+
+import com.example.imageservice.persistence.ImageRecord;
+
+import java.util.List;
+
+/**
+ * One page of a full snapshot of the images a node owns.
+ * @param owner URL of the sending node
+ * @param started When the sender started the snapshot; identifies its pages
+ * @param complete Whether this is the last page. The receiver then drops replicas from this owner
+ *                 that no page mentioned.
+ */
+public record SyncBatch(String owner, long started, boolean complete, List<ImageRecord> records) {}
@@ -0,0 +1,62 @@
+package com.example.imageservice.config;
+
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread creation for the service's own executors.
+ * <p>
+ * {@code spring.threads.virtual.enabled=true} moves Tomcat's request handling (and with it the
+ * blocking file I/O of uploads and downloads) onto virtual threads; executors built here follow
+ * the same switch. Virtual threads need Java 21, so on older JVMs the setting is ignored and
+ * platform threads are used throughout.
+ */
+public final class ExecutionMode {
+    /** Placeholder for injecting the switch with {@code @Value}. */
+    public static final String VIRTUAL_THREADS = "${spring.threads.virtual.enabled:false}";
+
+    private ExecutionMode() {
+    }
+
+    /**
+     * @param requested Value of {@code spring.threads.virtual.enabled}
+     * @return Whether virtual threads were requested and the running JVM supports them
+     */
+    public static boolean virtualThreads(boolean requested) {
+        return requested && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+    }
+
+    /**
+     * Named daemon platform threads, numbered from 1.
+     */
+    public static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * An unbounded executor for tasks that block. In virtual mode every task gets a fresh virtual
+     * thread; otherwise idle daemon platform threads are reused.
+     * @param virtual Value of {@code spring.threads.virtual.enabled}
+     */
+    public static ExecutorService blockingTasks(String prefix, boolean virtual) {
+        if (virtualThreads(virtual)) {
+            // No keep-alive, so a worker ends with its task: one cheap thread per task, never pooled
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                    new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory());
+        }
+        return Executors.newCachedThreadPool(daemonThreads(prefix));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.imageservice.config;
+
+import com.example.imageservice.persistence.InMemoryMetadataRepository;
+import com.example.imageservice.persistence.LogMetadataRepository;
+import com.example.imageservice.persistence.MetadataRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Selects the metadata persistence backend ({@code imageservice.metadata.store=log|memory}).
+ */
+@Configuration
+public class MetadataStoreConfig {
+
+    @Bean
+    public MetadataRepository metadataRepository(@Value("${imageservice.metadata.store:log}") String store,
+                                                 @Value("${imageservice.metadata.dir:metadata}") String dir,
+                                                 @Value("${imageservice.metadata.compact-after:10000}") int compactAfter) {
+        if ("memory".equals(store)) {
+            return new InMemoryMetadataRepository();
+        }
+        return new LogMetadataRepository(Paths.get(dir), compactAfter);
+    }
+}
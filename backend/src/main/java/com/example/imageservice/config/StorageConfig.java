@@ -0,0 +1,20 @@
+package com.example.imageservice.config;
+
+import com.example.imageservice.storage.BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Content-addressed blob storage for uploaded image bytes.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public BlobStore blobStore(@Value("${imageservice.storage.blob-dir:images/blobs}") String dir) {
+        return new BlobStore(Paths.get(dir));
+    }
+}
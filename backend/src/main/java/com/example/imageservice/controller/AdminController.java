@@ -0,0 +1,121 @@
+package com.example.imageservice.controller;
+
+import com.example.imageservice.cache.HotFileCache;
+import com.example.imageservice.cluster.ClusterService;
+import com.example.imageservice.cluster.ClusterStatus;
+import com.example.imageservice.limit.AdaptiveLimiter;
+import com.example.imageservice.limit.ConcurrencyLimitFilter;
+import com.example.imageservice.notification.ImageNotificationService;
+import com.example.imageservice.service.EnrichmentStatus;
+import com.example.imageservice.service.ImageService;
+import com.example.imageservice.service.IndexStatus;
+import com.example.imageservice.service.MigrationStatus;
+import com.example.imageservice.service.ReclaimStatus;
+import com.example.imageservice.storage.BlobStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("/api/admin")
+public class AdminController {
+    @Autowired
+    private ImageService imageService;
+    @Autowired
+    private HotFileCache hotFileCache;
+    @Autowired
+    private ImageNotificationService notificationService;
+    @Autowired
+    private ClusterService clusterService;
+    @Autowired
+    private ConcurrencyLimitFilter limitFilter;
+
+    /**
+     * Report blob storage usage and the deduplication ratio (logical / physical bytes).
+     * @return Storage statistics
+     */
+    @GetMapping("/storage")
+    public ResponseEntity<BlobStore.Stats> getStorageStats() {
+        return ResponseEntity.ok(imageService.getStorageStats());
+    }
+
+    /**
+     * Report hot-file cache hit, miss and eviction counters.
+     * @return Cache statistics
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<HotFileCache.Stats> getCacheStats() {
+        return ResponseEntity.ok(hotFileCache.stats());
+    }
+
+    /**
+     * Report SSE subscriber count, queue depth and dropped events.
+     * @return Notification fan-out statistics
+     */
+    @GetMapping("/notifications")
+    public ResponseEntity<ImageNotificationService.Stats> getNotificationStats() {
+        return ResponseEntity.ok(notificationService.stats());
+    }
+
+    /**
+     * Report startup index warm-up progress; usable as a readiness probe.
+     * @return Index status, with 503 until the warm-up has finished
+     */
+    @GetMapping("/index")
+    public ResponseEntity<IndexStatus> getIndexStatus() {
+        IndexStatus status = imageService.getIndexStatus();
+        return ResponseEntity.status(status.ready() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(status);
+    }
+
+    /**
+     * Report progress of the background removal of deleted images' files and of the orphan sweep.
+     * @return Reclaimer status
+     */
+    @GetMapping("/reclaim")
+    public ResponseEntity<ReclaimStatus> getReclaimStatus() {
+        return ResponseEntity.ok(imageService.getReclaimStatus());
+    }
+
+    /**
+     * Report progress of moving flat legacy image files into the sharded blob store.
+     * @return Migration status
+     */
+    @GetMapping("/migration")
+    public ResponseEntity<MigrationStatus> getMigrationStatus() {
+        return ResponseEntity.ok(imageService.getMigrationStatus());
+    }
+
+    /**
+     * Report progress of reading dimensions, EXIF and colours from images in the background.
+     * @return Enrichment status
+     */
+    @GetMapping("/enrichment")
+    public ResponseEntity<EnrichmentStatus> getEnrichmentStatus() {
+        return ResponseEntity.ok(imageService.getEnrichmentStatus());
+    }
+
+    /**
+     * Report this node's cluster peers and how far replication to each has got.
+     * @return Cluster status
+     */
+    @GetMapping("/cluster")
+    public ResponseEntity<ClusterStatus> getClusterStatus() {
+        return ResponseEntity.ok(clusterService.status());
+    }
+
+    /**
+     * Report each endpoint class's current concurrency limit, requests in flight and rejections.
+     * @return One entry per limiter
+     */
+    @GetMapping("/limits")
+    public ResponseEntity<List<AdaptiveLimiter.Stats>> getLimits() {
+        return ResponseEntity.ok(limitFilter.stats());
+    }
+}
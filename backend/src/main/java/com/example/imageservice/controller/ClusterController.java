@@ -0,0 +1,76 @@
+package com.example.imageservice.controller;
+
+import com.example.imageservice.cluster.ClusterService;
+import com.example.imageservice.cluster.SyncBatch;
+import com.example.imageservice.persistence.ImageRecord;
+import com.example.imageservice.service.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Node-to-node endpoints of cluster mode. Not for browsers, hence no CORS.
+ */
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+    @Autowired
+    private ClusterService clusterService;
+    @Autowired
+    private ImageService imageService;
+
+    /**
+     * Apply changes made on a peer.
+     * @param changes Upserts and deletions, in the order the peer made them
+     */
+    @PostMapping("/changes")
+    public ResponseEntity<?> applyChanges(@RequestHeader(value = "X-Cluster-Secret", required = false) String secret,
+                                          @RequestBody List<ImageRecord> changes) {
+        ResponseEntity<?> refused = refuse(secret);
+        if (refused != null) {
+            return refused;
+        }
+        clusterService.apply(changes);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Apply one page of a peer's snapshot of the images it owns.
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<?> applySnapshot(@RequestHeader(value = "X-Cluster-Secret", required = false) String secret,
+                                           @RequestBody SyncBatch batch) {
+        ResponseEntity<?> refused = refuse(secret);
+        if (refused != null) {
+            return refused;
+        }
+        if (batch.owner() == null || batch.records() == null) {
+            return ResponseEntity.badRequest().body("owner and records are required");
+        }
+        if (!clusterService.isPeer(batch.owner())) {
+            return ResponseEntity.badRequest().body("owner is not a configured peer");
+        }
+        clusterService.applySnapshot(batch);
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<?> refuse(String secret) {
+        if (!clusterService.isEnabled()) {
+            return ResponseEntity.status(404).body("Cluster mode is not enabled");
+        }
+        if (!clusterService.isAuthorized(secret)) {
+            return ResponseEntity.status(403).body("Wrong cluster secret");
+        }
+        if (!imageService.getIndexStatus().ready()) {
+            // Changes applied now would be overwritten by the index warm-up; the peer retries
+            return ResponseEntity.status(503).body("Index is warming up");
+        }
+        return null;
+    }
+}
@@ -1,19 +1,38 @@
 package com.example.imageservice.controller;
 
+import com.example.imageservice.cache.HotFileCache;
+import com.example.imageservice.index.ImageQuery;
+import com.example.imageservice.index.SimilarImage;
+import com.example.imageservice.metrics.ImageMetrics;
 import com.example.imageservice.model.Image;
 import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.playlist.PlaylistService;
+import com.example.imageservice.rendition.Rendition;
+import com.example.imageservice.rendition.RenditionService;
 import com.example.imageservice.service.ImageService;
+import com.example.imageservice.upload.BulkUploadService;
+import com.example.imageservice.upload.UploadResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.bind.annotation.CrossOrigin;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.List;
+import java.util.regex.Pattern;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
@@ -21,6 +40,30 @@ import java.util.List;
 public class ImageController {
     @Autowired
     private ImageService imageService;
+    @Autowired
+    private ImageFileSender fileSender;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private RenditionService renditionService;
+    @Autowired
+    private HotFileCache hotFileCache;
+    @Autowired
+    private BulkUploadService bulkUploadService;
+    @Autowired
+    private ImageMetrics metrics;
+    @Autowired
+    private PlaylistService playlistService;
+
+    private static final Logger log = LoggerFactory.getLogger(ImageController.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Half the hash: beyond this, unrelated pictures start to match
+    private static final int MAX_SIMILARITY_DISTANCE = 32;
+    // As many frames as a playlist step can hold
+    private static final int MAX_BATCH_FILES = 64;
+    private static final Pattern BATCH_ID = Pattern.compile("[!-~&&[^<>]]+");
 
     /**
      * Upload an image file and store it on disk with metadata.
@@ -29,24 +72,127 @@ public class ImageController {
      */
     @PostMapping
     public ResponseEntity<?> uploadImage(@RequestParam(value = "file", required = false) MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            return ResponseEntity.badRequest().body("No file uploaded");
+        return metrics.time(ImageMetrics.UPLOAD, () -> {
+            if (file == null || file.isEmpty()) {
+                return ResponseEntity.badRequest().body("No file uploaded");
+            }
+            try {
+                Image img = imageService.saveImage(file);
+                metrics.recordIngest(file.getSize());
+                return ResponseEntity.ok(img);
+            } catch (Exception e) {
+                log.error("Failed to save image {}", file.getOriginalFilename(), e);
+                return ResponseEntity.internalServerError().body("Failed to save image: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Upload many image files in one request. Files are stored concurrently and each one
+     * succeeds or fails independently.
+     * @param files Multipart parts named "files"
+     * @return One result per file in request order; 207 if any file failed or was cancelled
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> uploadImages(@RequestParam(value = "files", required = false) List<MultipartFile> files) {
+        return metrics.time(ImageMetrics.UPLOAD_BATCH, () -> {
+            if (files == null || files.isEmpty()) {
+                return ResponseEntity.badRequest().body("No files uploaded");
+            }
+            List<UploadResult> results = bulkUploadService.saveAll(files);
+            boolean allStored = true;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).success()) {
+                    metrics.recordIngest(files.get(i).getSize());
+                } else if (results.get(i).cancelled()) {
+                    allStored = false;
+                    log.info("Bulk upload of {} cancelled", results.get(i).filename());
+                } else {
+                    allStored = false;
+                    log.warn("Bulk upload of {} failed: {}", results.get(i).filename(), results.get(i).error());
+                }
+            }
+            return ResponseEntity.status(allStored ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(results);
+        });
+    }
+
+    /**
+     * Get a list of all stored images and their metadata.
+     * Without parameters the full list is returned as a JSON array. With a cursor, limit or
+     * filter the result is one page, streamed as {"items":[...],"nextCursor":...}; pass
+     * nextCursor back as {@code after} to fetch the following page.
+     * @param after Id of the last image of the previous page
+     * @param limit Page size (default 100, at most 1000)
+     * @param name Case-insensitive name prefix
+     * @param mimeType Exact MIME type
+     * @param minSize Minimum size in bytes (inclusive)
+     * @param maxSize Maximum size in bytes (inclusive)
+     * @return List of Image objects, or null once a page has been written
+     */
+    @GetMapping
+    public ResponseEntity<?> getAllImages(@RequestParam(required = false) String after,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String name,
+                                          @RequestParam(required = false) String mimeType,
+                                          @RequestParam(required = false) Long minSize,
+                                          @RequestParam(required = false) Long maxSize,
+                                          HttpServletResponse response) throws IOException {
+        return metrics.time(ImageMetrics.LIST, () -> listImages(after, limit,
+                new ImageQuery(name, mimeType, minSize, maxSize), response));
+    }
+
+    private ResponseEntity<?> listImages(String after, Integer limit, ImageQuery query,
+                                         HttpServletResponse response) throws IOException {
+        if (after == null && limit == null && query.isEmpty()) {
+            return ResponseEntity.ok(imageService.getAllImages());
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + MAX_PAGE_SIZE);
         }
+        Iterator<Image> matches;
         try {
-            Image img = imageService.saveImage(file);
-            return ResponseEntity.ok(img);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("Failed to save image: " + e.getMessage());
+            matches = imageService.findImages(query, after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        // Serialize straight into the response so a page is never materialized as a list
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("items");
+            String last = null;
+            int written = 0;
+            while (written < pageSize && matches.hasNext()) {
+                Image img = matches.next();
+                gen.writeObject(img);
+                last = img.getId();
+                written++;
+            }
+            gen.writeEndArray();
+            gen.writeStringField("nextCursor", matches.hasNext() ? last : null);
+            gen.writeEndObject();
         }
+        return null;
     }
 
     /**
-     * Get a list of all stored images and their metadata.
-     * @return List of Image objects
+     * Get the next step of the slideshow shared by all viewers. The images listed in prefetch
+     * are loaded into the server's file cache ahead of time; clients should preload them too.
+     * @param frames Images per step (default 1, at most 64)
+     * @param cursor Cursor returned by the previous step; omit to start from the beginning
+     * @return PlaylistWindow with the images to show, the next cursor and prefetch hints
      */
-    @GetMapping
-    public ResponseEntity<List<Image>> getAllImages() {
-        return ResponseEntity.ok(imageService.getAllImages());
+    @GetMapping("/playlist")
+    public ResponseEntity<?> getPlaylist(@RequestParam(defaultValue = "1") int frames,
+                                         @RequestParam(required = false) String cursor) {
+        return metrics.time(ImageMetrics.PLAYLIST, () -> {
+            try {
+                return ResponseEntity.ok(playlistService.next(frames, cursor));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
     }
 
     /**
@@ -56,11 +202,40 @@ public class ImageController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<?> getImage(@PathVariable String id) {
-        Image img = imageService.getImage(id);
-        if (img == null) {
-            return ResponseEntity.status(404).body("Image not found");
-        }
-        return ResponseEntity.ok(img);
+        return metrics.time(ImageMetrics.GET, () -> {
+            Image img = imageService.getImage(id);
+            if (img == null) {
+                return ResponseEntity.status(404).body("Image not found");
+            }
+            return ResponseEntity.ok(img);
+        });
+    }
+
+    /**
+     * Find near-duplicates of an image: resized, re-encoded or lightly edited copies, by the
+     * Hamming distance between perceptual hashes.
+     * @param id Image ID
+     * @param maxDistance Differing bits allowed, 0 to 32 (default 10)
+     * @param limit Maximum number of results (default 100, at most 1000)
+     * @return SimilarImage list, closest first; empty if the image could not be decoded
+     */
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<?> getSimilarImages(@PathVariable String id,
+                                              @RequestParam(defaultValue = "10") int maxDistance,
+                                              @RequestParam(defaultValue = "100") int limit) {
+        return metrics.time(ImageMetrics.SIMILAR, () -> {
+            if (maxDistance < 0 || maxDistance > MAX_SIMILARITY_DISTANCE) {
+                return ResponseEntity.badRequest().body("maxDistance must be between 0 and " + MAX_SIMILARITY_DISTANCE);
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().body("limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+            List<SimilarImage> similar = imageService.findSimilar(id, maxDistance, limit);
+            if (similar == null) {
+                return ResponseEntity.status(404).body("Image not found");
+            }
+            return ResponseEntity.ok(similar);
+        });
     }
 
     /**
@@ -69,16 +244,19 @@ public class ImageController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteImage(@PathVariable String id) {
-        Image img = imageService.getImage(id);
-        if (img == null) {
-            return ResponseEntity.status(404).body("Image not found");
-        }
-        try {
-            imageService.deleteImage(id);
-            return ResponseEntity.noContent().build();
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("Failed to delete image: " + e.getMessage());
-        }
+        return metrics.time(ImageMetrics.DELETE, () -> {
+            Image img = imageService.getImage(id);
+            if (img == null) {
+                return ResponseEntity.status(404).body("Image not found");
+            }
+            try {
+                imageService.deleteImage(id);
+                return ResponseEntity.noContent().build();
+            } catch (Exception e) {
+                log.error("Failed to delete image {}", id, e);
+                return ResponseEntity.internalServerError().body("Failed to delete image: " + e.getMessage());
+            }
+        });
     }
 
     /**
@@ -88,11 +266,13 @@ public class ImageController {
      */
     @GetMapping("/{id}/metadata")
     public ResponseEntity<?> getImageMetadata(@PathVariable String id) {
-        ImageMetadata meta = imageService.getImageMetadata(id);
-        if (meta == null) {
-            return ResponseEntity.status(404).body("Image metadata not found");
-        }
-        return ResponseEntity.ok(meta);
+        return metrics.time(ImageMetrics.METADATA_GET, () -> {
+            ImageMetadata meta = imageService.getImageMetadata(id);
+            if (meta == null) {
+                return ResponseEntity.status(404).body("Image metadata not found");
+            }
+            return ResponseEntity.ok(meta);
+        });
     }
 
     /**
@@ -103,28 +283,186 @@ public class ImageController {
      */
     @PostMapping("/{id}/metadata")
     public ResponseEntity<ImageMetadata> setImageMetadata(@PathVariable String id, @RequestBody ImageMetadata metadata) {
-        return ResponseEntity.ok(imageService.setImageMetadata(id, metadata));
+        return metrics.time(ImageMetrics.METADATA_SET,
+                () -> ResponseEntity.ok(imageService.setImageMetadata(id, metadata)));
     }
     /**
      * Download the actual image file by ID (for display in frontend).
+     * Streams from disk and honours Range, If-None-Match and If-Modified-Since.
+     * With {@code w} and/or {@code fmt} a resized, re-encoded rendition is served instead.
      * @param id Image ID
-     * @return Raw image bytes with correct MIME type
+     * @param w Rendition width in pixels (never upscaled)
+     * @param fmt Rendition format, jpeg or png (default jpeg)
+     * @return null once the body has been written, or an error response
      */
     @GetMapping("/{id}/file")
-    public ResponseEntity<?> getImageFile(@PathVariable String id) {
-        Image image = imageService.getImage(id);
-        if (image == null) {
-            return ResponseEntity.status(404).body("Image not found");
+    public ResponseEntity<?> getImageFile(@PathVariable String id,
+                                          @RequestParam(required = false) Integer w,
+                                          @RequestParam(required = false) String fmt,
+                                          HttpServletRequest request, HttpServletResponse response) {
+        return metrics.time(ImageMetrics.DOWNLOAD, () -> sendImageFile(id, w, fmt, request, response));
+    }
+
+    /**
+     * Download several image files in one multipart/mixed response, e.g. all frames of a
+     * playlist step. Parts follow the order of {@code ids} and are identified by
+     * {@code Content-ID: <id>}; an image that cannot be sent gets a text part with an
+     * {@code X-Status} header instead of failing the batch.
+     * @param ids Image IDs (at most 64)
+     * @param w Rendition width in pixels, applied to every image
+     * @param fmt Rendition format, jpeg or png
+     * @return null once the body has been written, or an error response
+     */
+    @GetMapping("/files")
+    public ResponseEntity<?> getImageFiles(@RequestParam(required = false) List<String> ids,
+                                           @RequestParam(required = false) Integer w,
+                                           @RequestParam(required = false) String fmt,
+                                           HttpServletResponse response) {
+        return metrics.time(ImageMetrics.DOWNLOAD_BATCH, () -> {
+            if (ids == null || ids.isEmpty()) {
+                return ResponseEntity.badRequest().body("No ids given");
+            }
+            if (ids.size() > MAX_BATCH_FILES) {
+                return ResponseEntity.badRequest().body("At most " + MAX_BATCH_FILES + " ids per request");
+            }
+            for (String id : ids) {
+                // Ids are echoed in part headers
+                if (!BATCH_ID.matcher(id).matches()) {
+                    return ResponseEntity.badRequest().body("Invalid image id");
+                }
+            }
+            String invalid = checkRendition(w, fmt);
+            if (invalid != null) {
+                return ResponseEntity.badRequest().body(invalid);
+            }
+            long sent = 0;
+            try (MultipartWriter parts = new MultipartWriter(response)) {
+                for (String id : ids) {
+                    ImageBody body;
+                    try {
+                        body = resolveImageBody(id, w, fmt);
+                    } catch (IOException e) {
+                        log.error("Failed to read image file {}", id, e);
+                        parts.error(id, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Failed to read image file");
+                        continue;
+                    }
+                    if (body.error() != null) {
+                        parts.error(id, body.status(), body.error());
+                    } else if (body.bytes() != null) {
+                        sent += parts.write(id, body.mimeType(), body.etag(), body.bytes());
+                    } else {
+                        sent += writeFilePart(parts, id, body);
+                    }
+                }
+            } catch (IOException e) {
+                // Headers are out; all that is left is to drop the connection
+                log.warn("Failed to write image batch", e);
+            }
+            metrics.recordEgress(sent);
+            return null;
+        });
+    }
+
+    private long writeFilePart(MultipartWriter parts, String id, ImageBody body) throws IOException {
+        ByteBuffer cached;
+        try {
+            cached = hotFileCache.getOrLoad(body.path(), body.length());
+        } catch (IOException e) {
+            // Let the writer report the unreadable file in this part
+            cached = null;
+        }
+        if (cached != null) {
+            return parts.write(id, body.mimeType(), body.etag(), cached);
+        }
+        return parts.write(id, body.mimeType(), body.etag(), body.path(), body.length());
+    }
+
+    /**
+     * What to send for one image: a rendered body, a file on disk, or an error.
+     */
+    private record ImageBody(int status, String error, String mimeType, String etag, long lastModified,
+                             ByteBuffer bytes, Path path, long length) {
+        static ImageBody error(HttpStatus status, String message) {
+            return new ImageBody(status.value(), message, null, null, 0, null, null, 0);
+        }
+    }
+
+    private ResponseEntity<?> sendImageFile(String id, Integer w, String fmt,
+                                            HttpServletRequest request, HttpServletResponse response) {
+        String invalid = checkRendition(w, fmt);
+        if (invalid != null) {
+            return ResponseEntity.badRequest().body(invalid);
         }
         try {
-            Path path = Paths.get(image.getPath());
-            byte[] data = Files.readAllBytes(path);
-            String mimeType = Files.probeContentType(path);
-            return ResponseEntity.ok()
-                    .header("Content-Type", mimeType != null ? mimeType : "application/octet-stream")
-                    .body(data);
+            ImageBody body = resolveImageBody(id, w, fmt);
+            if (body.error() != null) {
+                return ResponseEntity.status(body.status()).body(body.error());
+            }
+            long sent;
+            if (body.bytes() != null) {
+                sent = fileSender.send(body.bytes(), body.lastModified(), body.mimeType(), body.etag(), request, response);
+            } else {
+                sent = fileSender.send(body.path(), body.length(), body.lastModified(),
+                        body.mimeType(), body.etag(), hotFileCache::getOrLoad, request, response);
+            }
+            metrics.recordEgress(sent);
+            return null;
         } catch (IOException e) {
+            log.error("Failed to read image file {}", id, e);
             return ResponseEntity.internalServerError().body("Failed to read image file");
         }
     }
+
+    /**
+     * @return Why the rendition parameters are invalid, or null if they are fine
+     */
+    private String checkRendition(Integer w, String fmt) {
+        if (fmt != null && !RenditionService.FORMATS.contains(fmt.toLowerCase())) {
+            return "fmt must be one of " + RenditionService.FORMATS;
+        }
+        if (w != null && (w < 1 || w > renditionService.getMaxWidth())) {
+            return "w must be between 1 and " + renditionService.getMaxWidth();
+        }
+        return null;
+    }
+
+    private ImageBody resolveImageBody(String id, Integer w, String fmt) throws IOException {
+        Image image;
+        try {
+            // In cluster mode the file may first have to be copied from the node that owns it
+            image = imageService.fetchImage(id);
+        } catch (IOException e) {
+            log.warn("Failed to fetch image file {} from its node", id, e);
+            return ImageBody.error(HttpStatus.BAD_GATEWAY, "Image file is not available");
+        }
+        if (image == null) {
+            return ImageBody.error(HttpStatus.NOT_FOUND, "Image not found");
+        }
+        ImageMetadata meta = imageService.getImageMetadata(id);
+        if (meta == null) {
+            return ImageBody.error(HttpStatus.NOT_FOUND, "Image metadata not found");
+        }
+        String version = meta.getSha256() != null ? meta.getSha256()
+                : id + "-" + meta.getSize() + "-" + meta.getLastModified();
+        if (w != null || fmt != null) {
+            String format = fmt == null ? "jpeg" : fmt.toLowerCase();
+            Rendition rendition;
+            try {
+                rendition = renditionService.render(image, w, format);
+            } catch (RenditionService.SourceTooLargeException e) {
+                return ImageBody.error(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+            }
+            if (rendition == null) {
+                return ImageBody.error(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Cannot render images of type " + meta.getMimeType());
+            }
+            String etag = "\"" + version + "-w" + (w == null ? "orig" : w) + "." + format + "\"";
+            return new ImageBody(200, null, rendition.mimeType(), etag, meta.getLastModified(),
+                    ByteBuffer.wrap(rendition.bytes()), null, rendition.bytes().length);
+        }
+        // Headers come from metadata captured at upload time; the file is not touched until the
+        // sender knows it has to go out, and hot files are then served from memory
+        String mimeType = meta.getMimeType() != null ? meta.getMimeType() : "application/octet-stream";
+        return new ImageBody(200, null, mimeType, "\"" + version + "\"", meta.getLastModified(),
+                null, Paths.get(image.getPath()), meta.getSize());
+    }
 }
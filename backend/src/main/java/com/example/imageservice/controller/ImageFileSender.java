@@ -0,0 +1,184 @@
+package com.example.imageservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes image files straight from disk to the servlet response without loading them on the heap.
+ * Supports strong ETags, Last-Modified, conditional GETs (304) and single byte ranges (206).
+ * When the connector supports it the body is handed to Tomcat's sendfile; otherwise it is
+ * copied with {@link FileChannel#transferTo}. Bodies already in memory (cached renditions)
+ * go through the same header and range handling.
+ */
+@Component
+public class ImageFileSender {
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Supplies a file's full body from memory, or null to have it read from disk.
+     */
+    @FunctionalInterface
+    public interface MemorySource {
+        ByteBuffer get(Path path, long length) throws IOException;
+    }
+
+    /**
+     * Send a file (or the requested slice of it) to the client.
+     * @param path File on disk
+     * @param length File length in bytes
+     * @param lastModified Last modification time in epoch millis
+     * @param mimeType Content type to advertise
+     * @param etag Strong entity tag, already quoted
+     * @return Body bytes sent (0 for 304, 416 and HEAD)
+     */
+    public long send(Path path, long length, long lastModified, String mimeType, String etag,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return send(path, length, lastModified, mimeType, etag, (p, l) -> null, request, response);
+    }
+
+    /**
+     * Send a file like {@link #send(Path, long, long, String, String, HttpServletRequest, HttpServletResponse)},
+     * taking the body from memory when the source has it. The source is only asked once the
+     * response is known to carry the whole file, so 304s, ranges and HEADs never load it.
+     */
+    public long send(Path path, long length, long lastModified, String mimeType, String etag, MemorySource memory,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long[] slice = prepare(length, lastModified, mimeType, etag, request, response);
+        if (slice == null) {
+            return 0;
+        }
+        if (slice[0] == 0 && slice[1] == length) {
+            ByteBuffer body = memory.get(path, length);
+            if (body != null && body.remaining() == length) {
+                return write(body, slice, response);
+            }
+        }
+        long start = slice[0];
+        long count = slice[1];
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return count;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+            return count - remaining;
+        }
+    }
+
+    /**
+     * Send an in-memory body (or the requested slice of it) to the client, with the same
+     * header, range and conditional handling as for files.
+     * @param body Full content; its position and limit are left untouched
+     * @return Body bytes sent (0 for 304, 416 and HEAD)
+     */
+    public long send(ByteBuffer body, long lastModified, String mimeType, String etag,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long[] slice = prepare(body.remaining(), lastModified, mimeType, etag, request, response);
+        if (slice == null) {
+            return 0;
+        }
+        return write(body, slice, response);
+    }
+
+    private long write(ByteBuffer body, long[] slice, HttpServletResponse response) throws IOException {
+        ByteBuffer window = body.duplicate();
+        window.position(body.position() + (int) slice[0]);
+        window.limit(window.position() + (int) slice[1]);
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (window.hasRemaining()) {
+            out.write(window);
+        }
+        return slice[1];
+    }
+
+    /**
+     * Write status and headers, answering conditional and unsatisfiable requests outright.
+     * @return {start, count} of the bytes still to send, or null if the response is complete
+     */
+    private long[] prepare(long length, long lastModified, String mimeType, String etag,
+                           HttpServletRequest request, HttpServletResponse response) {
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            // 304 or 412 already set, together with ETag/Last-Modified
+            return null;
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(mimeType);
+        // The type was sniffed from the bytes at upload; stop browsers second-guessing it
+        response.setHeader("X-Content-Type-Options", "nosniff");
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return null;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return null;
+        }
+        return new long[]{start, count};
+    }
+
+    /**
+     * Resolve the single byte range to serve, or null for the full entity. Multiple ranges,
+     * malformed headers and a stale If-Range all fall back to a full 200 response, which
+     * RFC 9110 permits.
+     */
+    private HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.imageservice.controller;
 import com.example.imageservice.notification.ImageNotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -13,8 +14,19 @@ public class ImageNotificationController {
     @Autowired
     private ImageNotificationService notificationService;
 
+    /**
+     * Stream image events. Browsers reconnect with Last-Event-ID and are replayed what they missed.
+     */
     @GetMapping("/api/images/stream")
-    public SseEmitter streamImages() {
-        return notificationService.subscribe();
+    public SseEmitter streamImages(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Long resumeFrom = null;
+        if (lastEventId != null) {
+            try {
+                resumeFrom = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                // Not one of ours; start a fresh stream
+            }
+        }
+        return notificationService.subscribe(resumeFrom);
     }
 }
@@ -0,0 +1,112 @@
+package com.example.imageservice.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Writes several image bodies into one {@code multipart/mixed} response, in the order given.
+ * <p>
+ * Every part carries {@code Content-ID: <image id>} and a {@code Content-Length}, so clients can
+ * split the body without scanning it for the boundary. A part for an image that could not be
+ * sent has a {@code text/plain} body and an {@code X-Status} header with the status the single
+ * file endpoint would have returned. Files are copied with {@link FileChannel#transferTo};
+ * cached bodies are written straight from their buffers.
+ */
+class MultipartWriter implements Closeable {
+    private final String boundary = UUID.randomUUID().toString();
+    private final WritableByteChannel out;
+    private boolean first = true;
+
+    MultipartWriter(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("multipart/mixed; boundary=" + boundary);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        this.out = Channels.newChannel(response.getOutputStream());
+    }
+
+    /**
+     * Write an in-memory body; its position and limit are left untouched.
+     * @return Body bytes written
+     */
+    long write(String id, String mimeType, String etag, ByteBuffer body) throws IOException {
+        header(id, mimeType, body.remaining(), etag, 0);
+        ByteBuffer window = body.duplicate();
+        while (window.hasRemaining()) {
+            out.write(window);
+        }
+        return body.remaining();
+    }
+
+    /**
+     * Write a file. A file that cannot be opened becomes an error part.
+     * @return Body bytes written
+     */
+    long write(String id, String mimeType, String etag, Path path, long length) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            error(id, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to read image file");
+            return 0;
+        }
+        try (channel) {
+            header(id, mimeType, length, etag, 0);
+            long position = 0;
+            while (position < length) {
+                long written = channel.transferTo(position, length - position, out);
+                if (written <= 0) {
+                    // The length is already promised; a short file would corrupt the rest of the body
+                    throw new IOException("Image file " + path + " is shorter than " + length + " bytes");
+                }
+                position += written;
+            }
+            return length;
+        }
+    }
+
+    void error(String id, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        header(id, "text/plain; charset=UTF-8", body.length, null, status);
+        out.write(ByteBuffer.wrap(body));
+    }
+
+    /** Write the closing delimiter. */
+    @Override
+    public void close() throws IOException {
+        ascii((first ? "" : "\r\n") + "--" + boundary + "--\r\n");
+    }
+
+    private void header(String id, String mimeType, long length, String etag, int status) throws IOException {
+        StringBuilder header = new StringBuilder();
+        header.append(first ? "" : "\r\n").append("--").append(boundary).append("\r\n");
+        header.append("Content-ID: <").append(id).append(">\r\n");
+        header.append(HttpHeaders.CONTENT_TYPE).append(": ").append(mimeType).append("\r\n");
+        header.append(HttpHeaders.CONTENT_LENGTH).append(": ").append(length).append("\r\n");
+        if (etag != null) {
+            header.append(HttpHeaders.ETAG).append(": ").append(etag).append("\r\n");
+        }
+        if (status != 0) {
+            header.append("X-Status: ").append(status).append("\r\n");
+        }
+        ascii(header.append("\r\n").toString());
+        first = false;
+    }
+
+    private void ascii(String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+}
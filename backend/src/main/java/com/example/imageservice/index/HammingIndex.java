@@ -0,0 +1,153 @@
+package com.example.imageservice.index;
+
+import java.util.Arrays;
+
+/**
+ * Multi-index hash over 64-bit hashes under Hamming distance, mapping each hash to the sequence
+ * numbers holding it.
+ * <p>
+ * Each hash is filed under its four 16-bit chunks, one table per chunk. Two hashes within
+ * distance {@code r} differ by at most {@code r / 4} bits in at least one chunk, so a search only
+ * probes the buckets within that radius of each of the query's chunks and checks the full
+ * distance of what it finds there. Wide searches, where probing would touch more buckets than a
+ * plain scan, walk every entry instead.
+ * <p>
+ * Not thread-safe; {@link ImageIndex} guards it with its secondary-index lock.
+ */
+class HammingIndex {
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    /** Beyond this per-chunk radius the probes outnumber the entries of a large index. */
+    private static final int MAX_PROBE_RADIUS = 4;
+
+    /** Receives search matches. */
+    @FunctionalInterface
+    interface Visitor {
+        void visit(long seq, int distance);
+    }
+
+    // tables[chunk][chunk value] holds (hash, seq) pairs back to back; allocated on first add
+    private long[][][] tables;
+    private int size;
+
+    void add(long hash, long seq) {
+        if (tables == null) {
+            tables = new long[CHUNKS][1 << CHUNK_BITS][];
+        }
+        for (int t = 0; t < CHUNKS; t++) {
+            long[][] table = tables[t];
+            int key = chunk(hash, t);
+            long[] bucket = table[key];
+            int length = bucket == null ? 0 : bucket.length;
+            long[] grown = bucket == null ? new long[2] : Arrays.copyOf(bucket, length + 2);
+            grown[length] = hash;
+            grown[length + 1] = seq;
+            table[key] = grown;
+        }
+        size++;
+    }
+
+    void remove(long hash, long seq) {
+        if (tables == null) {
+            return;
+        }
+        for (int t = 0; t < CHUNKS; t++) {
+            long[][] table = tables[t];
+            int key = chunk(hash, t);
+            long[] bucket = table[key];
+            if (bucket == null) {
+                return;
+            }
+            int at = -1;
+            for (int i = 0; i < bucket.length; i += 2) {
+                if (bucket[i] == hash && bucket[i + 1] == seq) {
+                    at = i;
+                    break;
+                }
+            }
+            if (at < 0) {
+                return;
+            }
+            if (bucket.length == 2) {
+                table[key] = null;
+            } else {
+                long[] shrunk = new long[bucket.length - 2];
+                System.arraycopy(bucket, 0, shrunk, 0, at);
+                System.arraycopy(bucket, at + 2, shrunk, at, bucket.length - at - 2);
+                table[key] = shrunk;
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Visit every sequence number whose hash is within {@code maxDistance} of {@code hash}, once each.
+     */
+    void search(long hash, int maxDistance, Visitor visitor) {
+        if (tables == null || maxDistance < 0) {
+            return;
+        }
+        int radius = maxDistance / CHUNKS;
+        if (radius > MAX_PROBE_RADIUS) {
+            // Every entry is in exactly one bucket of the first table
+            for (long[] bucket : tables[0]) {
+                if (bucket != null) {
+                    for (int i = 0; i < bucket.length; i += 2) {
+                        int d = Long.bitCount(bucket[i] ^ hash);
+                        if (d <= maxDistance) {
+                            visitor.visit(bucket[i + 1], d);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        for (int t = 0; t < CHUNKS; t++) {
+            probe(t, chunk(hash, t), 0, radius, hash, maxDistance, radius, visitor);
+        }
+    }
+
+    /** Number of sequence numbers held. */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Check the bucket for {@code key} in table {@code t}, then every key reachable by flipping up
+     * to {@code flips} more bits at or above {@code fromBit}; each key is visited once.
+     */
+    private void probe(int t, int key, int fromBit, int flips, long hash, int maxDistance, int radius,
+                       Visitor visitor) {
+        long[] bucket = tables[t][key];
+        if (bucket != null) {
+            for (int i = 0; i < bucket.length; i += 2) {
+                long candidate = bucket[i];
+                int d = Long.bitCount(candidate ^ hash);
+                if (d <= maxDistance && firstMatchingChunk(candidate ^ hash, radius) == t) {
+                    visitor.visit(bucket[i + 1], d);
+                }
+            }
+        }
+        for (int bit = fromBit; bit < CHUNK_BITS && flips > 0; bit++) {
+            probe(t, key ^ (1 << bit), bit + 1, flips - 1, hash, maxDistance, radius, visitor);
+        }
+    }
+
+    /**
+     * The first table whose probes reach an entry with this difference from the query; the
+     * entry is reported from that table only.
+     */
+    private static int firstMatchingChunk(long difference, int radius) {
+        for (int t = 0; t < CHUNKS; t++) {
+            if (Integer.bitCount(chunk(difference, t)) <= radius) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    private static int chunk(long hash, int t) {
+        return (int) (hash >>> (t * CHUNK_BITS)) & CHUNK_MASK;
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.imageservice.index;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Concurrent, insertion-ordered index of images by id.
+ * <p>
+ * Lookups go through a {@link ConcurrentHashMap}; insertion order is kept in a skip list keyed
+ * by a global sequence number, so iteration order never changes for existing entries. Writers
+ * take one of a fixed set of striped locks (chosen by id) so the structures are updated
+ * together for a given id while writers on other ids proceed in parallel.
+ * <p>
+ * {@link #values()} returns an immutable snapshot that is rebuilt only after a mutation, so
+ * repeated listings between writes cost nothing.
+ * <p>
+ * Secondary indexes over name, MIME type and size map to sequence numbers, which lets
+ * {@link #find} page through filtered results in insertion order with a keyset cursor. They
+ * are concurrent maps of concurrent sets; a bucket is changed under a second set of striped
+ * locks chosen by its key, so writers on different names and sizes do not wait for each other.
+ * A {@link HammingIndex} over perceptual hashes answers {@link #similar} without a full scan.
+ */
+public class ImageIndex {
+    private static final int STRIPES = 64;
+
+    private record Node(long seq, Image image, ImageMetadata metadata) {}
+
+    private record Snapshot(long version, List<Image> images) {}
+
+    /** Next sequence number of one bucket in a merge, and the rest of that bucket. */
+    private record Head(long seq, Iterator<Long> rest) {}
+
+    private final ConcurrentHashMap<String, Node> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Node> bySeq = new ConcurrentSkipListMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final AtomicLong nextSeq = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, List.of());
+
+    // Secondary indexes: key -> sequence numbers. Readers need no lock; a bucket is added to,
+    // removed from and dropped when empty only under its key's stripe
+    private final ReentrantLock[] keyStripes = new ReentrantLock[STRIPES];
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListSet<Long>> byName = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Long>> byMimeType = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, ConcurrentSkipListSet<Long>> bySize = new ConcurrentSkipListMap<>();
+    // Not thread-safe; guarded by hashLock, which is only taken when a perceptual hash changes
+    private final ReentrantReadWriteLock hashLock = new ReentrantReadWriteLock();
+    private final HammingIndex byHash = new HammingIndex();
+
+    public ImageIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+            keyStripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Add or replace an image without metadata.
+     */
+    public void put(Image image) {
+        put(image, null);
+    }
+
+    /**
+     * Add or replace an image and its metadata. A replaced image keeps its original position.
+     */
+    public void put(Image image, ImageMetadata metadata) {
+        String id = image.getId();
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            Node existing = byId.get(id);
+            long seq = existing != null ? existing.seq() : nextSeq.incrementAndGet();
+            Node node = new Node(seq, image, metadata);
+            byId.put(id, node);
+            bySeq.put(seq, node);
+            reindex(existing, node);
+        } finally {
+            lock.unlock();
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Replace the metadata of an indexed image; ignored if the id is not indexed.
+     */
+    public void updateMetadata(String id, ImageMetadata metadata) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            Node existing = byId.get(id);
+            if (existing == null) {
+                return;
+            }
+            Node node = new Node(existing.seq(), existing.image(), metadata);
+            byId.put(id, node);
+            bySeq.put(node.seq(), node);
+            reindex(existing, node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove an image by id.
+     * @return The removed image, or null if absent
+     */
+    public Image remove(String id) {
+        Node removed;
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            removed = byId.remove(id);
+            if (removed != null) {
+                bySeq.remove(removed.seq());
+                reindex(removed, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (removed == null) {
+            return null;
+        }
+        version.incrementAndGet();
+        return removed.image();
+    }
+
+    public Image get(String id) {
+        Node node = byId.get(id);
+        return node != null ? node.image() : null;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * All images in insertion order. The list is immutable and reflects at least every
+     * mutation that completed before the call.
+     */
+    public List<Image> values() {
+        Snapshot current = snapshot;
+        long v = version.get();
+        if (current.version() == v) {
+            return current.images();
+        }
+        List<Image> images = bySeq.values().stream().map(Node::image).toList();
+        Snapshot rebuilt = new Snapshot(v, images);
+        // Never replace a newer snapshot published by a concurrent reader
+        synchronized (this) {
+            if (snapshot.version() < v) {
+                snapshot = rebuilt;
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Lazily iterate images matching a query in insertion order, starting after a cursor.
+     * The most selective secondary index narrows the candidates; the remaining filters are
+     * checked against each candidate's metadata.
+     * @param query Filters to apply
+     * @param afterId Id of the last image already seen, or null to start from the beginning
+     * @throws IllegalArgumentException if afterId is not in the index
+     */
+    public Iterator<Image> find(ImageQuery query, String afterId) {
+        long after = 0;
+        if (afterId != null) {
+            Node cursor = byId.get(afterId);
+            if (cursor == null) {
+                throw new IllegalArgumentException("Unknown cursor: " + afterId);
+            }
+            after = cursor.seq();
+        }
+        Iterator<Long> candidates = candidates(query, after);
+        return new Iterator<>() {
+            private Image next = advance();
+
+            private Image advance() {
+                while (candidates.hasNext()) {
+                    Node node = bySeq.get(candidates.next());
+                    if (node != null && (query.isEmpty() || query.matches(node.metadata()))) {
+                        return node.image();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Image next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Image current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Images whose perceptual hash is within {@code maxDistance} bits of the given image's,
+     * closest first and then in insertion order, excluding the image itself.
+     * @param limit Maximum number of results
+     * @return The matches, empty if the image has no perceptual hash, or null if it is not indexed
+     */
+    public List<SimilarImage> similar(String id, int maxDistance, int limit) {
+        Node query = byId.get(id);
+        if (query == null) {
+            return null;
+        }
+        Long hash = query.metadata() != null ? parseHash(query.metadata().getPerceptualHash()) : null;
+        if (hash == null) {
+            return List.of();
+        }
+        // Collect (distance, seq) pairs under the lock, resolve and sort outside it
+        List<long[]> matches = new ArrayList<>();
+        hashLock.readLock().lock();
+        try {
+            byHash.search(hash, maxDistance, (seq, distance) -> {
+                if (seq != query.seq()) {
+                    matches.add(new long[]{distance, seq});
+                }
+            });
+        } finally {
+            hashLock.readLock().unlock();
+        }
+        matches.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        List<SimilarImage> result = new ArrayList<>(Math.min(limit, matches.size()));
+        for (long[] match : matches) {
+            if (result.size() == limit) {
+                break;
+            }
+            Node node = bySeq.get(match[1]);
+            if (node != null) {
+                result.add(new SimilarImage(node.image(), (int) match[0]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sequence numbers after {@code after} that may match the query, ascending, from the
+     * narrowest applicable index.
+     */
+    private Iterator<Long> candidates(ImageQuery query, long after) {
+        if (query.isEmpty()) {
+            return bySeq.keySet().tailSet(after, false).iterator();
+        }
+        // Live, weakly consistent views: a page sees writes that complete while it runs or not
+        if (query.getNamePrefix() != null) {
+            String prefix = normalize(query.getNamePrefix());
+            return merge(byName.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values(), after);
+        }
+        if (query.getMinSize() != null || query.getMaxSize() != null) {
+            long min = query.getMinSize() != null ? query.getMinSize() : Long.MIN_VALUE;
+            long max = query.getMaxSize() != null ? query.getMaxSize() : Long.MAX_VALUE;
+            return min > max ? Collections.emptyIterator() : merge(bySize.subMap(min, true, max, true).values(), after);
+        }
+        NavigableSet<Long> mime = byMimeType.get(query.getMimeType());
+        return mime != null ? mime.tailSet(after, false).iterator() : Collections.emptyIterator();
+    }
+
+    /**
+     * Merge the buckets' sequence numbers after {@code after} into one ascending stream. Only
+     * the head of each bucket is held, so a page reads about as many entries as it returns
+     * rather than copying every match.
+     */
+    private static Iterator<Long> merge(Collection<ConcurrentSkipListSet<Long>> buckets, long after) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(buckets.size() + 1, Comparator.comparingLong(Head::seq));
+        for (ConcurrentSkipListSet<Long> bucket : buckets) {
+            Iterator<Long> rest = bucket.tailSet(after, false).iterator();
+            if (rest.hasNext()) {
+                heads.add(new Head(rest.next(), rest));
+            }
+        }
+        return new Iterator<>() {
+            private long last = after;
+
+            @Override
+            public boolean hasNext() {
+                // A node being reindexed may briefly be seen in two buckets
+                while (!heads.isEmpty() && heads.peek().seq() <= last) {
+                    pop();
+                }
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = pop();
+                return last;
+            }
+
+            private long pop() {
+                Head head = heads.poll();
+                if (head.rest().hasNext()) {
+                    heads.add(new Head(head.rest().next(), head.rest()));
+                }
+                return head.seq();
+            }
+        };
+    }
+
+    /**
+     * Move a node's secondary index entries from its old metadata to its new one.
+     * Called with the id's stripe lock held; either node may be null. A replaced image keeps
+     * its sequence number, so only the keys can differ.
+     */
+    private void reindex(Node previous, Node current) {
+        ImageMetadata before = previous != null ? previous.metadata() : null;
+        ImageMetadata after = current != null ? current.metadata() : null;
+        if (before == null && after == null) {
+            return;
+        }
+        long seq = current != null ? current.seq() : previous.seq();
+        move(byName, before != null ? normalize(before.getName()) : null,
+                after != null ? normalize(after.getName()) : null, seq);
+        move(byMimeType, before != null ? before.getMimeType() : null, after != null ? after.getMimeType() : null, seq);
+        move(bySize, before != null ? before.getSize() : null, after != null ? after.getSize() : null, seq);
+        Long oldHash = before != null ? parseHash(before.getPerceptualHash()) : null;
+        Long newHash = after != null ? parseHash(after.getPerceptualHash()) : null;
+        if (!Objects.equals(oldHash, newHash)) {
+            hashLock.writeLock().lock();
+            try {
+                if (oldHash != null) {
+                    byHash.remove(oldHash, seq);
+                }
+                if (newHash != null) {
+                    byHash.add(newHash, seq);
+                }
+            } finally {
+                hashLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Move a sequence number from one bucket to another. The new entry goes in before the old
+     * one comes out, so a concurrent page may see the node twice (the merge drops the repeat)
+     * but never misses it.
+     */
+    private <K> void move(ConcurrentMap<K, ConcurrentSkipListSet<Long>> index, K from, K to, long seq) {
+        if (Objects.equals(from, to)) {
+            return;
+        }
+        if (to != null) {
+            ReentrantLock lock = keyStripe(to);
+            lock.lock();
+            try {
+                index.computeIfAbsent(to, k -> new ConcurrentSkipListSet<>()).add(seq);
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (from != null) {
+            ReentrantLock lock = keyStripe(from);
+            lock.lock();
+            try {
+                ConcurrentSkipListSet<Long> seqs = index.get(from);
+                if (seqs != null) {
+                    seqs.remove(seq);
+                    if (seqs.isEmpty()) {
+                        index.remove(from);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static Long parseHash(String hex) {
+        if (hex == null) {
+            return null;
+        }
+        try {
+            return Long.parseUnsignedLong(hex, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private ReentrantLock stripe(String id) {
+        int h = id.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private ReentrantLock keyStripe(Object key) {
+        int h = key.hashCode();
+        return keyStripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
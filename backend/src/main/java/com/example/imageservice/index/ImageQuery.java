@@ -0,0 +1,61 @@
+package com.example.imageservice.index;
+
+import com.example.imageservice.model.ImageMetadata;
+
+import java.util.Locale;
+
+/**
+ * Filters for listing images. Null fields are not applied; name matching is a
+ * case-insensitive prefix match and the size range is inclusive.
+ */
+public class ImageQuery {
+    private String namePrefix;
+    private String mimeType;
+    private Long minSize;
+    private Long maxSize;
+
+    public ImageQuery() {}
+
+    public ImageQuery(String namePrefix, String mimeType, Long minSize, Long maxSize) {
+        this.namePrefix = namePrefix;
+        this.mimeType = mimeType;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    public String getNamePrefix() { return namePrefix; }
+    public void setNamePrefix(String namePrefix) { this.namePrefix = namePrefix; }
+    public String getMimeType() { return mimeType; }
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+    public Long getMinSize() { return minSize; }
+    public void setMinSize(Long minSize) { this.minSize = minSize; }
+    public Long getMaxSize() { return maxSize; }
+    public void setMaxSize(Long maxSize) { this.maxSize = maxSize; }
+
+    public boolean isEmpty() {
+        return namePrefix == null && mimeType == null && minSize == null && maxSize == null;
+    }
+
+    /**
+     * Check every filter against an image's metadata. Images without metadata never match
+     * a non-empty query.
+     */
+    public boolean matches(ImageMetadata metadata) {
+        if (metadata == null) {
+            return false;
+        }
+        if (namePrefix != null) {
+            String name = metadata.getName() == null ? "" : metadata.getName().toLowerCase(Locale.ROOT);
+            if (!name.startsWith(namePrefix.toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        if (mimeType != null && !mimeType.equals(metadata.getMimeType())) {
+            return false;
+        }
+        if (minSize != null && metadata.getSize() < minSize) {
+            return false;
+        }
+        return maxSize == null || metadata.getSize() <= maxSize;
+    }
+}
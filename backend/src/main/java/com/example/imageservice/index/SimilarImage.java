@@ -0,0 +1,9 @@
+package com.example.imageservice.index;
+
+import com.example.imageservice.model.Image;
+
+/**
+ * An image found by a similarity search, with the number of bits its perceptual hash differs
+ * from the query image's.
+ */
+public record SimilarImage(Image image, int distance) {}
@@ -0,0 +1,124 @@
+package com.example.imageservice.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit that follows observed latency, after the gradient algorithm of Netflix's
+ * concurrency-limits library.
+ * <p>
+ * Latencies are averaged over short windows, and each window is compared with a slow-moving
+ * average of the earlier ones. While the two agree (within a tolerance) the limit grows by about
+ * its square root per window; once recent latency rises above the long-term average, the limit
+ * shrinks in proportion. Requests over the limit are turned away instead of queued, so admitted
+ * requests keep close to unloaded latency.
+ */
+public class AdaptiveLimiter {
+    /** Counters for monitoring. {@code latencyMillis} is the long-term average. */
+    public record Stats(String name, int limit, int inFlight, long rejected, double latencyMillis) {}
+
+    // Recent latency may exceed the long-term average by this factor before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    // Weight of a new estimate in the limit
+    private static final double SMOOTHING = 0.2;
+    // Windows in the long-term average; slow, so that sustained overload does not become the norm
+    private static final int LONG_TERM_WINDOWS = 500;
+    private static final int WINDOW_SAMPLES = 10;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile double limit;
+
+    // Guarded by this
+    private long windowStart;
+    private long windowSum;
+    private int windowCount;
+    private int windowPeak;
+    private double longRtt;
+
+    /**
+     * @param windowNanos Minimum length of a sampling window; a window also needs 10 samples
+     */
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, long windowNanos) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = windowNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Take a permit if fewer requests than the limit are in flight.
+     * @return false if the request should be rejected
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return a permit.
+     * @param latencyNanos How long the request took, or -1 if it failed and says nothing about load
+     */
+    public void release(long latencyNanos) {
+        int before = inFlight.getAndDecrement();
+        if (latencyNanos >= 0) {
+            sample(latencyNanos, before);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(name, (int) limit, inFlight.get(), rejected.get(), longRtt / 1e6);
+    }
+
+    private synchronized void sample(long latencyNanos, int concurrency) {
+        long now = System.nanoTime();
+        if (windowCount == 0) {
+            windowStart = now;
+        }
+        windowSum += latencyNanos;
+        windowCount++;
+        windowPeak = Math.max(windowPeak, concurrency);
+        if (windowCount < WINDOW_SAMPLES || now - windowStart < windowNanos) {
+            return;
+        }
+        double shortRtt = (double) windowSum / windowCount;
+        int peak = windowPeak;
+        windowSum = 0;
+        windowCount = 0;
+        windowPeak = 0;
+
+        longRtt = longRtt == 0 ? shortRtt : longRtt + (shortRtt - longRtt) / LONG_TERM_WINDOWS;
+        if (longRtt > 2 * shortRtt) {
+            // Load has dropped well below what the average remembers; let it catch up faster
+            longRtt *= 0.95;
+        }
+        if (peak < limit / 2) {
+            // Far below the limit, latency says nothing about where the limit should be
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + estimate * SMOOTHING));
+    }
+}
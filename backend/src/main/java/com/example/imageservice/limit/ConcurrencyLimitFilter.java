@@ -0,0 +1,123 @@
+package com.example.imageservice.limit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sheds load on the image API before it piles up in threads and heap.
+ * <p>
+ * Requests are split into uploads, file downloads and everything else (metadata, listing,
+ * playlist), and each class has its own {@link AdaptiveLimiter}, so a burst of uploads cannot
+ * crowd out cheap reads. A request over its class's limit gets {@code 503} with
+ * {@code Retry-After} at once. This runs as a servlet filter so that a rejected upload is turned
+ * away before its multipart body is read. The SSE stream is not limited.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final int MIN_LIMIT = 4;
+    private static final byte[] BUSY = "Server is busy, retry later".getBytes(StandardCharsets.US_ASCII);
+
+    enum EndpointClass { UPLOAD, DOWNLOAD, METADATA }
+
+    @Value("${imageservice.limit.enabled:true}")
+    boolean enabled = true; // package-private for test injection
+    @Value("${imageservice.limit.retry-after-seconds:1}")
+    int retryAfterSeconds = 1; // package-private for test injection
+    @Value("${imageservice.limit.window-millis:100}")
+    long windowMillis = 100; // package-private for test injection
+    @Value("${imageservice.limit.upload.max:32}")
+    int uploadMax = 32; // package-private for test injection
+    @Value("${imageservice.limit.download.max:200}")
+    int downloadMax = 200; // package-private for test injection
+    @Value("${imageservice.limit.metadata.max:200}")
+    int metadataMax = 200; // package-private for test injection
+
+    private final Map<EndpointClass, AdaptiveLimiter> limiters = new EnumMap<>(EndpointClass.class);
+
+    @PostConstruct
+    public void start() {
+        limiters.put(EndpointClass.UPLOAD, limiter(EndpointClass.UPLOAD, uploadMax));
+        limiters.put(EndpointClass.DOWNLOAD, limiter(EndpointClass.DOWNLOAD, downloadMax));
+        limiters.put(EndpointClass.METADATA, limiter(EndpointClass.METADATA, metadataMax));
+    }
+
+    public List<AdaptiveLimiter> getLimiters() {
+        return List.copyOf(limiters.values());
+    }
+
+    public List<AdaptiveLimiter.Stats> stats() {
+        List<AdaptiveLimiter.Stats> stats = new ArrayList<>();
+        for (AdaptiveLimiter limiter : limiters.values()) {
+            stats.add(limiter.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpoint = enabled ? classify(request) : null;
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        AdaptiveLimiter limiter = limiters.get(endpoint);
+        if (!limiter.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            // With a length the client can keep its connection for the retry
+            response.setContentLength(BUSY.length);
+            response.getOutputStream().write(BUSY);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limiter.release(failed ? -1 : System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return The request's limit class, or null if it is not limited
+     */
+    static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        if (!(path.equals("/api/images") || path.startsWith("/api/images/"))
+                || path.equals("/api/images/stream") || "OPTIONS".equals(method)) {
+            return null;
+        }
+        if ("POST".equals(method) && (path.equals("/api/images") || path.equals("/api/images/batch"))) {
+            return EndpointClass.UPLOAD;
+        }
+        if ("GET".equals(method) && (path.endsWith("/file") || path.equals("/api/images/files"))) {
+            return EndpointClass.DOWNLOAD;
+        }
+        return EndpointClass.METADATA;
+    }
+
+    private AdaptiveLimiter limiter(EndpointClass endpoint, int max) {
+        // Start low and let latency show how far the limit can go
+        return new AdaptiveLimiter(endpoint.name().toLowerCase(), max / 4, MIN_LIMIT, max, windowMillis * 1_000_000);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.imageservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and traffic meters for the image API.
+ * <p>
+ * Every operation is timed into the {@code image.operation} histogram, tagged with the
+ * operation name and its outcome ({@code success}, {@code client_error} or {@code server_error},
+ * taken from the response status). Stored and served image bytes are counted in
+ * {@code image.ingest.bytes} and {@code image.egress.bytes}.
+ */
+@Component
+public class ImageMetrics {
+    public static final String UPLOAD = "upload";
+    public static final String UPLOAD_BATCH = "upload_batch";
+    public static final String LIST = "list";
+    public static final String GET = "get";
+    public static final String DOWNLOAD = "download";
+    public static final String DOWNLOAD_BATCH = "download_batch";
+    public static final String DELETE = "delete";
+    public static final String METADATA_GET = "metadata_get";
+    public static final String METADATA_SET = "metadata_set";
+    public static final String PLAYLIST = "playlist";
+    public static final String SIMILAR = "similar";
+
+    /**
+     * A timed piece of work; may throw the caller's checked exception.
+     */
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private final MeterRegistry registry;
+    private final Counter ingestBytes;
+    private final Counter egressBytes;
+
+    public ImageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.ingestBytes = Counter.builder("image.ingest.bytes")
+                .description("Image bytes received by uploads")
+                .baseUnit("bytes")
+                .register(registry);
+        this.egressBytes = Counter.builder("image.egress.bytes")
+                .description("Image and rendition bytes sent to clients")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Run an operation and record its latency and outcome. An exception counts as a server error.
+     * @param operation One of the operation names above
+     * @return Whatever the operation returned
+     */
+    public <T, E extends Exception> T time(String operation, Operation<T, E> body) throws E {
+        long start = System.nanoTime();
+        String outcome = "server_error";
+        try {
+            T result = body.run();
+            outcome = outcome(result);
+            return result;
+        } finally {
+            timer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordIngest(long bytes) {
+        if (bytes > 0) {
+            ingestBytes.increment(bytes);
+        }
+    }
+
+    public void recordEgress(long bytes) {
+        if (bytes > 0) {
+            egressBytes.increment(bytes);
+        }
+    }
+
+    private Timer timer(String operation, String outcome) {
+        // The registry returns the existing meter for a known name and tags
+        return Timer.builder("image.operation")
+                .description("Latency of image API operations")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    private static String outcome(Object result) {
+        // Handlers that write the body themselves return null, which means success
+        if (!(result instanceof ResponseEntity<?> entity)) {
+            return "success";
+        }
+        int status = entity.getStatusCode().value();
+        if (status >= 500) {
+            return "server_error";
+        }
+        return status >= 400 ? "client_error" : "success";
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.imageservice.metrics;
+
+import com.example.imageservice.cache.HotFileCache;
+import com.example.imageservice.limit.AdaptiveLimiter;
+import com.example.imageservice.limit.ConcurrencyLimitFilter;
+import com.example.imageservice.notification.ImageNotificationService;
+import com.example.imageservice.service.ImageService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.system.DiskSpaceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * Gauges over the service's own state: index size and readiness, blob storage and the disk it
+ * lives on, SSE subscribers, the hot-file cache and the concurrency limiters. Values are read from the components'
+ * stats on each scrape, so nothing is tracked twice.
+ */
+@Component
+public class ImageServiceMeterBinder implements MeterBinder {
+    private final ImageService imageService;
+    private final HotFileCache hotFileCache;
+    private final ImageNotificationService notificationService;
+    private final ConcurrencyLimitFilter limitFilter;
+    private final File storageDir;
+
+    public ImageServiceMeterBinder(ImageService imageService, HotFileCache hotFileCache,
+                                   ImageNotificationService notificationService,
+                                   ConcurrencyLimitFilter limitFilter,
+                                   @Value("${imageservice.storage.blob-dir:images/blobs}") String blobDir) {
+        this.imageService = imageService;
+        this.hotFileCache = hotFileCache;
+        this.notificationService = notificationService;
+        this.limitFilter = limitFilter;
+        this.storageDir = new File(blobDir);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("image.store.images", imageService, s -> s.getIndexStatus().images())
+                .description("Images in the index")
+                .register(registry);
+        Gauge.builder("image.store.ready", imageService, s -> s.getIndexStatus().ready() ? 1 : 0)
+                .description("1 once the startup index warm-up has finished")
+                .register(registry);
+        Gauge.builder("image.storage.blobs", imageService, s -> s.getStorageStats().blobs())
+                .description("Distinct stored image contents")
+                .register(registry);
+        Gauge.builder("image.storage.logical", imageService, s -> s.getStorageStats().logicalBytes())
+                .description("Bytes of all stored images, counting duplicates")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("image.storage.physical", imageService, s -> s.getStorageStats().physicalBytes())
+                .description("Bytes of stored image contents on disk")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("image.reclaim.pending", imageService, s -> s.getReclaimStatus().pending())
+                .description("Files of deleted images waiting to be removed")
+                .register(registry);
+        FunctionCounter.builder("image.reclaim.reclaimed", imageService, s -> s.getReclaimStatus().reclaimed())
+                .description("Files of deleted images removed in the background")
+                .register(registry);
+        Gauge.builder("image.enrichment.pending", imageService, s -> s.getEnrichmentStatus().pending())
+                .description("Images waiting for dimensions, EXIF and colour to be read")
+                .register(registry);
+        // disk.free and disk.total for the volume holding the blobs
+        new DiskSpaceMetrics(storageDir).bindTo(registry);
+
+        Gauge.builder("image.sse.subscribers", notificationService, s -> s.stats().subscribers())
+                .description("Connected SSE subscribers")
+                .register(registry);
+        Gauge.builder("image.sse.queued", notificationService, s -> s.stats().queuedMessages())
+                .description("Messages waiting to be sent to SSE subscribers")
+                .register(registry);
+        FunctionCounter.builder("image.sse.delivered", notificationService, s -> s.stats().delivered())
+                .description("Messages sent to SSE subscribers")
+                .register(registry);
+        FunctionCounter.builder("image.sse.dropped", notificationService, s -> s.stats().dropped())
+                .description("Events dropped for slow subscribers")
+                .register(registry);
+        FunctionCounter.builder("image.sse.reaped", notificationService, s -> s.stats().reaped())
+                .description("Subscribers removed after a failed send")
+                .register(registry);
+
+        FunctionCounter.builder("image.cache.gets", hotFileCache, c -> c.stats().hits())
+                .tag("result", "hit")
+                .description("Hot-file cache lookups")
+                .register(registry);
+        FunctionCounter.builder("image.cache.gets", hotFileCache, c -> c.stats().misses())
+                .tag("result", "miss")
+                .description("Hot-file cache lookups")
+                .register(registry);
+        FunctionCounter.builder("image.cache.evictions", hotFileCache, c -> c.stats().evictions())
+                .description("Files evicted from the hot-file cache")
+                .register(registry);
+        Gauge.builder("image.cache.entries", hotFileCache, c -> c.stats().entries())
+                .description("Files held in the hot-file cache")
+                .register(registry);
+        Gauge.builder("image.cache.size", hotFileCache, c -> c.stats().bytes())
+                .description("Bytes held in the hot-file cache")
+                .baseUnit("bytes")
+                .register(registry);
+
+        for (AdaptiveLimiter limiter : limitFilter.getLimiters()) {
+            Gauge.builder("image.limit.limit", limiter, AdaptiveLimiter::getLimit)
+                    .tag("class", limiter.getName())
+                    .description("Concurrent requests currently admitted per endpoint class")
+                    .register(registry);
+            Gauge.builder("image.limit.inflight", limiter, l -> l.stats().inFlight())
+                    .tag("class", limiter.getName())
+                    .description("Requests being handled per endpoint class")
+                    .register(registry);
+            FunctionCounter.builder("image.limit.rejected", limiter, l -> l.stats().rejected())
+                    .tag("class", limiter.getName())
+                    .description("Requests turned away with 503 because their class was at its limit")
+                    .register(registry);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.example.imageservice.model;
 
+import java.util.regex.Pattern;
+
 public class Image {
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
     private String id;
     private String name;
     private String path;
@@ -13,6 +17,13 @@ public class Image {
         this.path = path;
     }
 
+    /**
+     * Whether a string has the form of the ids this service assigns (random UUIDs).
+     */
+    public static boolean isValidId(String id) {
+        return id != null && ID.matcher(id).matches();
+    }
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getName() { return name; }
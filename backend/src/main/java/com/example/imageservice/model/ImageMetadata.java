@@ -1,10 +1,21 @@
 package com.example.imageservice.model;
 
+import java.util.Map;
+
 public class ImageMetadata {
     private String id;
     private String name;
     private String mimeType;
     private long size;
+    private long lastModified;
+    private String sha256;
+    private String perceptualHash;
+    private Integer width;
+    private Integer height;
+    private Integer orientation;
+    private Map<String, String> exif;
+    private String dominantColor;
+    private String owner;
 
     public ImageMetadata() {}
 
@@ -15,6 +26,23 @@ public class ImageMetadata {
         this.size = size;
     }
 
+    public ImageMetadata(String id, String name, String mimeType, long size, long lastModified) {
+        this(id, name, mimeType, size);
+        this.lastModified = lastModified;
+    }
+
+    public ImageMetadata(ImageMetadata other) {
+        this(other.id, other.name, other.mimeType, other.size, other.lastModified);
+        this.sha256 = other.sha256;
+        this.perceptualHash = other.perceptualHash;
+        this.width = other.width;
+        this.height = other.height;
+        this.orientation = other.orientation;
+        this.exif = other.exif;
+        this.dominantColor = other.dominantColor;
+        this.owner = other.owner;
+    }
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getName() { return name; }
@@ -23,4 +51,29 @@ public class ImageMetadata {
     public void setMimeType(String mimeType) { this.mimeType = mimeType; }
     public long getSize() { return size; }
     public void setSize(long size) { this.size = size; }
+    public long getLastModified() { return lastModified; }
+    public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    /** 64-bit difference hash of the pixels as 16 hex digits, or null if the image could not be decoded. */
+    public String getPerceptualHash() { return perceptualHash; }
+    public void setPerceptualHash(String perceptualHash) { this.perceptualHash = perceptualHash; }
+    /** Width in pixels as displayed, i.e. after applying the EXIF orientation; null until enriched. */
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+    /** Height in pixels as displayed; null until enriched. */
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+    /** EXIF orientation tag (1-8), or null if the file has none. */
+    public Integer getOrientation() { return orientation; }
+    public void setOrientation(Integer orientation) { this.orientation = orientation; }
+    /** Key EXIF fields such as camera make and model and capture time, or null if the file has none. */
+    public Map<String, String> getExif() { return exif; }
+    public void setExif(Map<String, String> exif) { this.exif = exif; }
+    /** Most common colour of the picture as {@code #rrggbb}; null until enriched. */
+    public String getDominantColor() { return dominantColor; }
+    public void setDominantColor(String dominantColor) { this.dominantColor = dominantColor; }
+    /** In cluster mode, URL of the node holding the file; null if it was uploaded to this node. */
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
 }
@@ -0,0 +1,54 @@
+package com.example.imageservice.notification;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * A change to the image collection as pushed to SSE subscribers. The sequence number is also
+ * sent as the SSE event id, so a reconnecting browser resumes with Last-Event-ID.
+ * <p>
+ * A {@link Type#RESYNC} event tells the client its view can no longer be patched (the events
+ * it missed are gone) and it should reload the image list.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ImageEvent(long seq, Type type, String id, Image image, ImageMetadata metadata) {
+    public enum Type {
+        CREATED, DELETED, METADATA_UPDATED, RESYNC;
+
+        @JsonValue
+        public String value() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static ImageEvent created(Image image, ImageMetadata metadata) {
+        return new ImageEvent(0, Type.CREATED, image.getId(), image, metadata);
+    }
+
+    public static ImageEvent deleted(String id) {
+        return new ImageEvent(0, Type.DELETED, id, null, null);
+    }
+
+    public static ImageEvent metadataUpdated(String id, ImageMetadata metadata) {
+        return new ImageEvent(0, Type.METADATA_UPDATED, id, null, metadata);
+    }
+
+    /**
+     * Ask every subscriber to reload the list, e.g. after the index finished warming up.
+     */
+    public static ImageEvent resync() {
+        return resync(0);
+    }
+
+    static ImageEvent resync(long seq) {
+        return new ImageEvent(seq, Type.RESYNC, null, null, null);
+    }
+
+    ImageEvent withSeq(long seq) {
+        return new ImageEvent(seq, type, id, image, metadata);
+    }
+}
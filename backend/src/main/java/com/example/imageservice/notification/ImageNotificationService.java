@@ -1,28 +1,338 @@
 package com.example.imageservice.notification;
 
+import com.example.imageservice.config.ExecutionMode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Fans image events out to SSE subscribers without blocking the publisher.
+ * <p>
+ * Every event gets the next sequence number and is kept in a bounded ring buffer. Events
+ * published within the batch window are coalesced (one entry per image id) and sent as a single
+ * SSE message whose data is a JSON array and whose id is the last sequence number covered. The
+ * message is serialized once and the same frame is written to every subscriber.
+ * <p>
+ * A client reconnecting with Last-Event-ID is replayed the events it missed as one message, or
+ * sent a {@link ImageEvent.Type#RESYNC} if they have already left the ring.
+ * <p>
+ * Each subscriber has a bounded queue drained by a delivery thread, at most one per subscriber
+ * at a time, so a slow browser only delays its own messages. When a queue overflows its pending
+ * messages are collapsed into a resync, since the client could no longer apply the rest in order.
+ * A periodic keep-alive comment keeps idle connections open through proxies and surfaces dead
+ * connections, which are removed on the first failed write.
+ */
 @Service
 public class ImageNotificationService {
-    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    /** Counters for monitoring. */
+    public record Stats(int subscribers, long queuedMessages, int maxQueueDepth, long delivered, long dropped,
+                        long reaped, long lastSeq, int replayEvents, long batches) {}
+
+    static final int DEFAULT_QUEUE_CAPACITY = 256;
+    static final long DEFAULT_HEARTBEAT_MILLIS = 15_000;
+    static final int DEFAULT_REPLAY_CAPACITY = 1024;
+    static final long DEFAULT_BATCH_WINDOW_MILLIS = 50;
+    static final int DEFAULT_BATCH_MAX_EVENTS = 500;
+
+    /** A serialized SSE message covering events up to seq. */
+    private record Frame(long seq, int events, Set<DataWithMediaType> data) {}
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("keep-alive").build();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final int queueCapacity;
+    private final long batchWindowMillis;
+    private final int batchMaxEvents;
+    private final ExecutorService deliveryExecutor;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(ExecutionMode.daemonThreads("sse-scheduler-"));
+
+    // Guarded by this: ring[seq % length] holds event seq; pending holds events after flushedSeq
+    private final ImageEvent[] ring;
+    private long lastSeq;
+    private long flushedSeq;
+    private final List<ImageEvent> pending = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong reaped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public ImageNotificationService() {
+        this(DEFAULT_QUEUE_CAPACITY, DEFAULT_HEARTBEAT_MILLIS, DEFAULT_REPLAY_CAPACITY, DEFAULT_BATCH_WINDOW_MILLIS,
+                DEFAULT_BATCH_MAX_EVENTS);
+    }
+
+    public ImageNotificationService(int queueCapacity, long heartbeatMillis, int replayCapacity,
+                                    long batchWindowMillis, int batchMaxEvents) {
+        this(queueCapacity, heartbeatMillis, replayCapacity, batchWindowMillis, batchMaxEvents, false);
+    }
+
+    /**
+     * @param virtualThreads Deliver on virtual threads (Java 21+), so subscribers blocked on slow
+     *                       sockets do not each hold a platform thread
+     */
+    @Autowired
+    public ImageNotificationService(@Value("${imageservice.notification.queue-capacity:256}") int queueCapacity,
+                                    @Value("${imageservice.notification.heartbeat-millis:15000}") long heartbeatMillis,
+                                    @Value("${imageservice.notification.replay-capacity:1024}") int replayCapacity,
+                                    @Value("${imageservice.notification.batch-window-millis:50}") long batchWindowMillis,
+                                    @Value("${imageservice.notification.batch-max-events:500}") int batchMaxEvents,
+                                    @Value(ExecutionMode.VIRTUAL_THREADS) boolean virtualThreads) {
+        this.deliveryExecutor = ExecutionMode.blockingTasks("sse-delivery-", virtualThreads);
+        this.queueCapacity = queueCapacity;
+        this.ring = new ImageEvent[Math.max(1, replayCapacity)];
+        this.batchWindowMillis = batchWindowMillis;
+        this.batchMaxEvents = Math.max(1, batchMaxEvents);
+        if (heartbeatMillis > 0) {
+            scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+    }
 
     public SseEmitter subscribe() {
-        SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
-        emitters.add(emitter);
-        emitter.onCompletion(() -> emitters.remove(emitter));
-        emitter.onTimeout(() -> emitters.remove(emitter));
+        return subscribe(null);
+    }
+
+    /**
+     * Subscribe, replaying everything after the given event id.
+     * @param lastEventId Sequence number of the last event the client saw, or null for a fresh stream
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        return subscribe(new SseEmitter(Long.MAX_VALUE), lastEventId);
+    }
+
+    /**
+     * Register an emitter created by the caller; package-private for tests.
+     */
+    SseEmitter subscribe(SseEmitter emitter, Long lastEventId) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // Registration and replay happen under the publish lock, so no event is missed or repeated.
+        // Events still pending will reach the new subscriber with the next flush.
+        synchronized (this) {
+            if (lastEventId != null && lastEventId != flushedSeq) {
+                long oldest = Math.max(1, lastSeq - ring.length + 1);
+                if (lastEventId < oldest - 1 || lastEventId > flushedSeq) {
+                    subscriber.offer(resyncFrame(flushedSeq));
+                } else {
+                    List<ImageEvent> missed = new ArrayList<>();
+                    for (long seq = lastEventId + 1; seq <= flushedSeq; seq++) {
+                        missed.add(ring[(int) (seq % ring.length)]);
+                    }
+                    subscriber.offer(frame(flushedSeq, coalesce(missed)));
+                }
+            }
+            subscribers.add(subscriber);
+        }
         return emitter;
     }
 
-    public void notifyClients(Object event) {
-        for (SseEmitter emitter : emitters) {
+    /**
+     * Assign the next sequence number to an event and queue it for the next batch; returns
+     * immediately. The batch is sent when the window elapses or it reaches the size limit.
+     * @return The event with its sequence number
+     */
+    public synchronized ImageEvent publish(ImageEvent event) {
+        ImageEvent sequenced = event.withSeq(++lastSeq);
+        ring[(int) (lastSeq % ring.length)] = sequenced;
+        pending.add(sequenced);
+        if (batchWindowMillis <= 0 || pending.size() >= batchMaxEvents) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = scheduler.schedule(this::flush, batchWindowMillis, TimeUnit.MILLISECONDS);
+        }
+        return sequenced;
+    }
+
+    /**
+     * Send all pending events now as one message.
+     */
+    public synchronized void flush() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        Frame frame = frame(lastSeq, coalesce(pending));
+        pending.clear();
+        flushedSeq = lastSeq;
+        batches.incrementAndGet();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    public Stats stats() {
+        long queued = 0;
+        int maxDepth = 0;
+        for (Subscriber subscriber : subscribers) {
+            int depth = subscriber.depth();
+            queued += depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        long seq;
+        synchronized (this) {
+            seq = lastSeq;
+        }
+        return new Stats(subscribers.size(), queued, maxDepth, delivered.get(), dropped.get(), reaped.get(),
+                seq, (int) Math.min(seq, ring.length), batches.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        deliveryExecutor.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Reduce a run of events to one per image id, keeping each image's final state:
+     * metadata updates fold into a pending creation, and a deletion replaces everything
+     * before it. Events for different ids are independent, so their relative order is free.
+     */
+    static List<ImageEvent> coalesce(List<ImageEvent> events) {
+        Map<String, ImageEvent> byId = new LinkedHashMap<>();
+        for (ImageEvent event : events) {
+            ImageEvent previous = byId.get(event.id());
+            if (previous != null && previous.type() == ImageEvent.Type.CREATED
+                    && event.type() == ImageEvent.Type.METADATA_UPDATED) {
+                event = new ImageEvent(event.seq(), ImageEvent.Type.CREATED, event.id(), previous.image(),
+                        event.metadata());
+            }
+            byId.put(event.id(), event);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    private Frame frame(long seq, List<ImageEvent> events) {
+        String json;
+        try {
+            json = mapper.writeValueAsString(events);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Frame(seq, events.size(), SseEmitter.event().id(Long.toString(seq)).data(json).build());
+    }
+
+    private Frame resyncFrame(long seq) {
+        return frame(seq, List.of(ImageEvent.resync(seq)));
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            // A subscriber with pending messages does not need a keep-alive
+            if (subscriber.depth() == 0) {
+                subscriber.offer(HEARTBEAT);
+            }
+        }
+    }
+
+    private void reap(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            reaped.incrementAndGet();
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        // Guarded by this; draining is true while a delivery task owns the emitter
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        private boolean draining;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Object item) {
+            synchronized (this) {
+                if (queue.size() >= queueCapacity) {
+                    // Replace the backlog with a resync positioned at the newest message
+                    for (Object queued : queue) {
+                        if (queued instanceof Frame frame) {
+                            dropped.addAndGet(frame.events());
+                        }
+                    }
+                    queue.clear();
+                    if (item instanceof Frame frame) {
+                        dropped.addAndGet(frame.events());
+                        item = resyncFrame(frame.seq());
+                    }
+                }
+                queue.add(item);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
             try {
-                emitter.send(event);
-            } catch (Exception e) {
-                emitters.remove(emitter);
+                deliveryExecutor.execute(this::drain);
+            } catch (RuntimeException e) {
+                // Executor shut down
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        synchronized int depth() {
+            return queue.size();
+        }
+
+        private void drain() {
+            while (true) {
+                Object item;
+                synchronized (this) {
+                    item = queue.poll();
+                    if (item == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    if (item instanceof Frame frame) {
+                        emitter.send(frame.data());
+                        delivered.addAndGet(frame.events());
+                    } else {
+                        emitter.send(HEARTBEAT);
+                    }
+                } catch (Exception e) {
+                    // Client went away; stop delivering and drop what is left
+                    synchronized (this) {
+                        queue.clear();
+                        draining = false;
+                    }
+                    reap(this);
+                    return;
+                }
             }
         }
     }
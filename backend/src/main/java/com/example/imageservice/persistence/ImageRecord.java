@@ -0,0 +1,15 @@
+package com.example.imageservice.persistence;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+
+/**
+ * An image id together with its image entry and metadata, as held by a {@link MetadataRepository}.
+ * Either part may be null when only the other has been stored. A {@code deleted} record is a
+ * tombstone: the image is gone, but its file may not have been removed yet.
+ */
+public record ImageRecord(String id, Image image, ImageMetadata metadata, boolean deleted) {
+    public ImageRecord(String id, Image image, ImageMetadata metadata) {
+        this(id, image, metadata, false);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.imageservice.persistence;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository that persists nothing; the service's own maps are the only copy.
+ * Used when {@code imageservice.metadata.store=memory} and by unit tests.
+ */
+public class InMemoryMetadataRepository implements MetadataRepository {
+    @Override
+    public List<ImageRecord> load() {
+        return List.of();
+    }
+
+    @Override
+    public void put(Image image, ImageMetadata metadata) {}
+
+    @Override
+    public void putAll(Collection<ImageRecord> records) {}
+
+    @Override
+    public void updateMetadata(String id, ImageMetadata metadata) {}
+
+    @Override
+    public void delete(String id) {}
+
+    @Override
+    public void purge(Collection<String> ids) {}
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+}
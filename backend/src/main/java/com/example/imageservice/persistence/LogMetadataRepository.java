@@ -0,0 +1,554 @@
+package com.example.imageservice.persistence;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe metadata repository built from an append-only write-ahead log and snapshots.
+ * <p>
+ * Mutations are appended to {@code wal-<gen>.log} as length- and CRC-framed JSON records.
+ * Only a single writer thread touches the log: callers queue their records and wait for them
+ * to be durable. The writer takes everything queued, writes it and forces the log once for
+ * the whole batch (group commit). Interrupting a caller therefore never interrupts file I/O,
+ * which would close the channel for every later write.
+ * <p>
+ * Once a log holds {@code compactAfter} records it is sealed and a fresh generation is
+ * started. A background task folds the sealed logs into {@code snapshot-<gen>.dat}, renames
+ * it into place atomically and deletes what it replaced. Startup reads the newest snapshot
+ * and replays only the logs written after it; a torn record at the tail of a log marks the
+ * end of that log. A batch that fails to write is therefore cut off the log again (or, if
+ * that fails too, the log is sealed) before anything else is appended after it.
+ */
+public class LogMetadataRepository implements MetadataRepository, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LogMetadataRepository.class);
+    private static final Pattern WAL = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.dat");
+    private static final String PUT = "put";
+    private static final String UPDATE = "update";
+    private static final String DELETE = "delete";
+    private static final String PURGE = "purge";
+
+    /** One log or snapshot record. */
+    record Entry(String op, String id, Image image, ImageMetadata metadata) {}
+
+    /** Encoded records waiting for the writer. */
+    private record PendingAppend(ByteBuffer frames, int records, CompletableFuture<Void> durable) {}
+
+    // Queued by close(): the writer stops once everything before it is written
+    private static final PendingAppend STOP = new PendingAppend(null, 0, null);
+
+    private final Path dir;
+    private final int compactAfter;
+    private final UnaryOperator<FileChannel> wrapLog;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "metadata-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LinkedBlockingQueue<PendingAppend> pending = new LinkedBlockingQueue<>();
+    private final Thread writer = new Thread(this::writeLoop, "metadata-log-writer");
+
+    // A lock rather than the object monitor, so that callers on virtual threads never pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock; the log is written and forced only by the writer thread
+    private FileChannel log;
+    private long generation;
+    private long recordsInLog;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * @param dir Directory holding logs and snapshots; created if missing
+     * @param compactAfter Number of log records after which the log is sealed and compacted
+     */
+    public LogMetadataRepository(Path dir, int compactAfter) {
+        this(dir, compactAfter, UnaryOperator.identity());
+    }
+
+    /**
+     * @param wrapLog Applied to every log channel as it is opened; package-private so tests can
+     *                inject write failures
+     */
+    LogMetadataRepository(Path dir, int compactAfter, UnaryOperator<FileChannel> wrapLog) {
+        this.dir = dir;
+        this.compactAfter = compactAfter;
+        this.wrapLog = wrapLog;
+        try {
+            Files.createDirectories(dir);
+            Files.deleteIfExists(dir.resolve("snapshot.tmp"));
+            long lastGeneration = Math.max(lastGeneration(WAL), lastGeneration(SNAPSHOT));
+            openLog(lastGeneration + 1);
+            if (!logGenerations(generation).isEmpty()) {
+                scheduleCompaction(generation - 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open metadata log in " + dir, e);
+        }
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public List<ImageRecord> load() {
+        lock.lock();
+        try {
+            Map<String, ImageRecord> state = readState(generation);
+            return new ArrayList<>(state.values());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load metadata", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Image image, ImageMetadata metadata) {
+        append(List.of(new Entry(PUT, image.getId(), image, metadata)));
+    }
+
+    @Override
+    public void putAll(Collection<ImageRecord> records) {
+        List<Entry> entries = new ArrayList<>(records.size());
+        for (ImageRecord record : records) {
+            entries.add(new Entry(PUT, record.id(), record.image(), record.metadata()));
+        }
+        append(entries);
+    }
+
+    @Override
+    public void updateMetadata(String id, ImageMetadata metadata) {
+        append(List.of(new Entry(UPDATE, id, null, metadata)));
+    }
+
+    @Override
+    public void delete(String id) {
+        append(List.of(new Entry(DELETE, id, null, null)));
+    }
+
+    @Override
+    public void purge(Collection<String> ids) {
+        List<Entry> entries = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            entries.add(new Entry(PURGE, id, null, null));
+        }
+        append(entries);
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.add(STOP);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            log.force(false);
+            log.close();
+        } catch (IOException e) {
+            // Everything acknowledged has already been forced
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        PendingAppend append = new PendingAppend(encode(entries), entries.size(), new CompletableFuture<>());
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Metadata log in " + dir + " is closed");
+            }
+            pending.add(append);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            // join() ignores interrupts: the records are written either way, and the caller
+            // keeps its interrupt status
+            append.durable().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause
+                    : new IllegalStateException("Failed to append to metadata log", e.getCause());
+        }
+    }
+
+    /**
+     * Body of the writer thread: commit whatever has been queued, batch by batch, until close().
+     */
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                // Only close() stops the writer
+                continue;
+            }
+            pending.drainTo(batch);
+            boolean stop = batch.remove(STOP);
+            commit(batch);
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write a batch of appends and force them to disk with a single sync.
+     */
+    private void commit(List<PendingAppend> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        FileChannel channel = null;
+        long start = 0;
+        long recordsBefore = 0;
+        try {
+            lock.lock();
+            try {
+                channel = log;
+                start = log.size();
+                recordsBefore = recordsInLog;
+                for (PendingAppend append : batch) {
+                    while (append.frames().hasRemaining()) {
+                        log.write(append.frames());
+                    }
+                    recordsInLog += append.records();
+                }
+                if (recordsInLog >= compactAfter && !compacting) {
+                    // Forces the sealed log
+                    rotate();
+                    channel = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (channel != null) {
+                // Outside the lock, so load() does not wait for the disk
+                channel.force(false);
+            }
+            for (PendingAppend append : batch) {
+                append.durable().complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            RuntimeException failure = e instanceof IOException io
+                    ? new UncheckedIOException("Failed to append to metadata log", io) : (RuntimeException) e;
+            lock.lock();
+            try {
+                discardFailedBatch(channel, start, recordsBefore);
+            } finally {
+                lock.unlock();
+            }
+            for (PendingAppend append : batch) {
+                append.durable().completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Cut a failed batch off the log it was written to, so the next batch does not follow a
+     * torn frame that replay would stop at. If the log cannot be truncated, or was already
+     * replaced, the next batch goes to a fresh generation instead: a torn frame is harmless at
+     * the end of a log. Called with the lock held.
+     */
+    private void discardFailedBatch(FileChannel channel, long start, long recordsBefore) {
+        if (channel != null && channel == log) {
+            try {
+                log.truncate(start);
+                log.force(false);
+                recordsInLog = recordsBefore;
+                return;
+            } catch (IOException e) {
+                logger.warn("Failed to truncate metadata log {} after a failed write", walPath(generation), e);
+            }
+        }
+        try {
+            if (log.isOpen()) {
+                log.close();
+            }
+        } catch (IOException e) {
+            // Nothing more is written to it either way
+        }
+        try {
+            openLog(generation + 1);
+        } catch (IOException e) {
+            // Later appends fail on the closed channel and try again
+            logger.error("Failed to start a new metadata log in {}", dir, e);
+        }
+    }
+
+    /**
+     * Seal the current log and start the next generation. Called with the lock held.
+     */
+    private void rotate() {
+        try {
+            log.force(false);
+            log.close();
+            openLog(generation + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rotate metadata log", e);
+        }
+        scheduleCompaction(generation - 1);
+    }
+
+    private void openLog(long newGeneration) throws IOException {
+        generation = newGeneration;
+        recordsInLog = 0;
+        log = wrapLog.apply(FileChannel.open(walPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    private void scheduleCompaction(long upTo) {
+        lock.lock();
+        try {
+            compacting = true;
+        } finally {
+            lock.unlock();
+        }
+        compactor.execute(() -> {
+            try {
+                compact(upTo);
+            } catch (IOException e) {
+                // Sealed logs stay in place and are replayed on startup; retried on next rotation
+                logger.warn("Metadata log compaction failed in {}", dir, e);
+            } finally {
+                lock.lock();
+                try {
+                    compacting = false;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fold the newest snapshot and every sealed log up to {@code upTo} into a new snapshot.
+     */
+    private void compact(long upTo) throws IOException {
+        Map<String, ImageRecord> state = readState(upTo);
+        Path tmp = dir.resolve("snapshot.tmp");
+        List<Entry> entries = new ArrayList<>(state.size());
+        for (ImageRecord record : state.values()) {
+            entries.add(new Entry(PUT, record.id(), record.image(), record.metadata()));
+            if (record.deleted()) {
+                entries.add(new Entry(DELETE, record.id(), null, null));
+            }
+        }
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer frames = encode(entries);
+            while (frames.hasRemaining()) {
+                out.write(frames);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, snapshotPath(upTo), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+        // Hold the lock so a concurrent load() never sees a file vanish mid-replay
+        lock.lock();
+        try {
+            for (long gen : snapshotGenerations(upTo)) {
+                Files.deleteIfExists(snapshotPath(gen));
+            }
+            for (long gen : logGenerations(upTo + 1)) {
+                Files.deleteIfExists(walPath(gen));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild state from the newest snapshot at or below {@code upTo} and the logs after it.
+     */
+    private Map<String, ImageRecord> readState(long upTo) throws IOException {
+        Map<String, ImageRecord> state = new LinkedHashMap<>();
+        List<Long> snapshots = snapshotGenerations(upTo + 1);
+        long base = 0;
+        if (!snapshots.isEmpty()) {
+            base = snapshots.get(snapshots.size() - 1);
+            replay(snapshotPath(base), state);
+        }
+        for (long gen : logGenerations(upTo + 1)) {
+            if (gen > base) {
+                replay(walPath(gen), state);
+            }
+        }
+        return state;
+    }
+
+    private void replay(Path file, Map<String, ImageRecord> state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 0 || length > (1 << 24)) {
+                        return;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        return;
+                    }
+                } catch (EOFException e) {
+                    return; // clean end, or a torn final record
+                }
+                apply(mapper.readValue(payload, Entry.class), state);
+            }
+        }
+    }
+
+    private static void apply(Entry entry, Map<String, ImageRecord> state) {
+        switch (entry.op()) {
+            case PUT -> state.put(entry.id(), new ImageRecord(entry.id(), entry.image(), entry.metadata()));
+            case UPDATE -> {
+                ImageRecord current = state.get(entry.id());
+                state.put(entry.id(), current != null
+                        ? new ImageRecord(entry.id(), current.image(), entry.metadata(), current.deleted())
+                        : new ImageRecord(entry.id(), null, entry.metadata()));
+            }
+            case DELETE -> {
+                // Keep the image as a tombstone until its file has been reclaimed
+                ImageRecord current = state.get(entry.id());
+                if (current != null && current.image() != null) {
+                    state.put(entry.id(), new ImageRecord(entry.id(), current.image(), current.metadata(), true));
+                } else {
+                    state.remove(entry.id());
+                }
+            }
+            case PURGE -> state.remove(entry.id());
+            default -> { }
+        }
+    }
+
+    private ByteBuffer encode(List<Entry> entries) {
+        try {
+            List<byte[]> payloads = new ArrayList<>(entries.size());
+            int total = 0;
+            for (Entry entry : entries) {
+                byte[] payload = mapper.writeValueAsBytes(entry);
+                payloads.add(payload);
+                total += 8 + payload.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(total);
+            CRC32 crc = new CRC32();
+            for (byte[] payload : payloads) {
+                crc.reset();
+                crc.update(payload);
+                buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            }
+            return buffer.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode metadata record", e);
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the rename itself is still atomic
+        }
+    }
+
+    private Path walPath(long gen) {
+        return dir.resolve("wal-" + gen + ".log");
+    }
+
+    private Path snapshotPath(long gen) {
+        return dir.resolve("snapshot-" + gen + ".dat");
+    }
+
+    private long lastGeneration(Pattern pattern) throws IOException {
+        TreeMap<Long, Path> files = list(pattern);
+        return files.isEmpty() ? 0 : files.lastKey();
+    }
+
+    /** Log generations strictly below {@code below}, ascending. */
+    private List<Long> logGenerations(long below) throws IOException {
+        return new ArrayList<>(list(WAL).headMap(below).keySet());
+    }
+
+    /** Snapshot generations strictly below {@code below}, ascending. */
+    private List<Long> snapshotGenerations(long below) throws IOException {
+        return new ArrayList<>(list(SNAPSHOT).headMap(below).keySet());
+    }
+
+    private TreeMap<Long, Path> list(Pattern pattern) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.forEach(path -> {
+                Matcher m = pattern.matcher(path.getFileName().toString());
+                if (m.matches()) {
+                    files.put(Long.parseLong(m.group(1)), path);
+                }
+            });
+        }
+        return files;
+    }
+}
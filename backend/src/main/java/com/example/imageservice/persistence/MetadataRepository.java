@@ -0,0 +1,46 @@
+package com.example.imageservice.persistence;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Durable storage for image entries and their metadata.
+ * Every mutating call returns only once the change would survive a crash.
+ */
+public interface MetadataRepository {
+    /**
+     * Load every stored entry in insertion order, including tombstones of deleted images
+     * ({@link ImageRecord#deleted()}) that have not been purged yet.
+     */
+    List<ImageRecord> load();
+
+    void put(Image image, ImageMetadata metadata);
+
+    /**
+     * Store many entries with a single durability barrier (used when seeding from disk).
+     */
+    void putAll(Collection<ImageRecord> records);
+
+    void updateMetadata(String id, ImageMetadata metadata);
+
+    /**
+     * Replace an entry with a tombstone that keeps its image, so the file can still be found.
+     */
+    void delete(String id);
+
+    /**
+     * Drop tombstones once their files are gone, with a single durability barrier.
+     */
+    void purge(Collection<String> ids);
+
+    /**
+     * Whether entries survive a restart. When they do not, files on disk cannot be told apart
+     * from ones no image refers to.
+     */
+    default boolean isDurable() {
+        return true;
+    }
+}
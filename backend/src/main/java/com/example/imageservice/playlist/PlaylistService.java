@@ -0,0 +1,179 @@
+package com.example.imageservice.playlist;
+
+import com.example.imageservice.cache.HotFileCache;
+import com.example.imageservice.config.ExecutionMode;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.service.ImageService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-driven slideshow over every image.
+ * <p>
+ * All viewers walk the same cyclic ordering, computed once per change of the image collection
+ * rather than per request. Each call returns the images for the next step plus the ids of the
+ * steps after it; those are loaded into the {@link HotFileCache} in the background, so they are
+ * served from memory by the time viewers ask for them. Viewers only ever hold one window.
+ * <p>
+ * Cursors have the form {@code <position>:<id>} of the last image shown. The id keeps a viewer
+ * in place when images are added or removed before it; the position is used if that image has
+ * been deleted.
+ */
+@Service
+public class PlaylistService {
+    public static final int MAX_FRAMES = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(PlaylistService.class);
+
+    /** The shared ordering: the index snapshot it was built from and each id's position. */
+    private record Order(List<Image> images, Map<String, Integer> positions) {}
+
+    private final ImageService imageService;
+    private final HotFileCache hotFileCache;
+    private final int prefetchSteps;
+    private final long intervalMillis;
+    private final ThreadPoolExecutor warmer;
+    private final Set<String> warming = ConcurrentHashMap.newKeySet();
+    private volatile Order order = new Order(List.of(), Map.of());
+
+    public PlaylistService(ImageService imageService, HotFileCache hotFileCache,
+                           @Value("${imageservice.playlist.prefetch-steps:2}") int prefetchSteps,
+                           @Value("${imageservice.playlist.interval-millis:2000}") long intervalMillis) {
+        this.imageService = imageService;
+        this.hotFileCache = hotFileCache;
+        this.prefetchSteps = Math.max(0, prefetchSteps);
+        this.intervalMillis = intervalMillis;
+        // Warming is best effort: a bounded queue, and anything beyond it is skipped
+        this.warmer = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(256),
+                ExecutionMode.daemonThreads("playlist-warmer-"));
+    }
+
+    /**
+     * Get the next step of the slideshow and start warming the steps after it.
+     * @param frames Images per step
+     * @param cursor Cursor from the previous step, or null to start from the beginning
+     * @throws IllegalArgumentException if frames is out of range or the cursor is malformed
+     */
+    public PlaylistWindow next(int frames, String cursor) {
+        if (frames < 1 || frames > MAX_FRAMES) {
+            throw new IllegalArgumentException("frames must be between 1 and " + MAX_FRAMES);
+        }
+        Order current = currentOrder();
+        List<Image> images = current.images();
+        int total = images.size();
+        if (total == 0) {
+            return new PlaylistWindow(List.of(), Map.of(), cursor, List.of(), intervalMillis, 0);
+        }
+        int start = cursor == null ? 0 : (position(current, cursor) + 1) % total;
+        // Never repeat an image within one step when the library is smaller than the frame count
+        int shown = Math.min(frames, total);
+        List<Image> window = new ArrayList<>(shown);
+        Map<String, ImageMetadata> metadata = new HashMap<>(shown * 2);
+        for (int i = 0; i < shown; i++) {
+            Image image = images.get((start + i) % total);
+            window.add(image);
+            ImageMetadata known = imageService.getImageMetadata(image.getId());
+            if (known != null) {
+                metadata.put(image.getId(), known);
+            }
+        }
+        int ahead = Math.min(shown * prefetchSteps, Math.max(0, total - shown));
+        List<String> prefetch = new ArrayList<>(ahead);
+        for (int i = 0; i < ahead; i++) {
+            // The current step was prefetched by the previous one; only the steps after it need warming
+            Image next = images.get((start + shown + i) % total);
+            prefetch.add(next.getId());
+            warm(next);
+        }
+        int last = (start + shown - 1) % total;
+        return new PlaylistWindow(window, metadata, last + ":" + images.get(last).getId(), prefetch, intervalMillis, total);
+    }
+
+    /**
+     * Rebuild the ordering only when the index has published a new snapshot.
+     */
+    private Order currentOrder() {
+        List<Image> snapshot = imageService.getAllImages();
+        Order current = order;
+        if (current.images() == snapshot) {
+            return current;
+        }
+        Map<String, Integer> positions = new HashMap<>(snapshot.size() * 2);
+        for (int i = 0; i < snapshot.size(); i++) {
+            positions.put(snapshot.get(i).getId(), i);
+        }
+        Order rebuilt = new Order(snapshot, positions);
+        order = rebuilt;
+        return rebuilt;
+    }
+
+    private static int position(Order order, String cursor) {
+        int colon = cursor.indexOf(':');
+        if (colon < 1) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        Integer byId = order.positions().get(cursor.substring(colon + 1));
+        if (byId != null) {
+            return byId;
+        }
+        try {
+            // The image was deleted; carry on from where it was
+            return Math.floorMod(Integer.parseInt(cursor.substring(0, colon)) - 1, order.images().size());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+    }
+
+    private void warm(Image image) {
+        ImageMetadata metadata = imageService.getImageMetadata(image.getId());
+        if (metadata == null) {
+            return;
+        }
+        Path path = Paths.get(image.getPath());
+        String key = path.toString();
+        // Viewers at the same position ask for the same images; load each file once
+        if (!warming.add(key)) {
+            return;
+        }
+        try {
+            warmer.execute(() -> {
+                try {
+                    // Also copies images that live on another cluster node ahead of time
+                    Image local = imageService.fetchImage(image.getId());
+                    if (local != null) {
+                        hotFileCache.preload(Paths.get(local.getPath()), metadata.getSize());
+                    }
+                } catch (IOException e) {
+                    log.debug("Failed to warm {}", path, e);
+                } finally {
+                    warming.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            warming.remove(key);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmer.shutdownNow();
+    }
+}
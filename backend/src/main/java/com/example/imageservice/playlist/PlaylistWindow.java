@@ -0,0 +1,20 @@
+package com.example.imageservice.playlist;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One step of the shared slideshow.
+ * @param images Images to show now, one per frame
+ * @param metadata Metadata of those images by id, so clients can size frames before the files arrive
+ * @param cursor Pass back to get the following step
+ * @param prefetch Ids of the images shown in the next steps, for the client to preload
+ * @param intervalMillis How long to show this step before asking for the next
+ * @param total Images in the whole playlist
+ */
+public record PlaylistWindow(List<Image> images, Map<String, ImageMetadata> metadata, String cursor, List<String> prefetch, long intervalMillis,
+                             int total) {
+}
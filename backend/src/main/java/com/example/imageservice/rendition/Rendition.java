@@ -0,0 +1,9 @@
+package com.example.imageservice.rendition;
+
+/**
+ * A generated rendition of an image, held in memory for serving.
+ * @param bytes Encoded image
+ * @param mimeType Content type of the encoding
+ */
+public record Rendition(byte[] bytes, String mimeType) {
+}
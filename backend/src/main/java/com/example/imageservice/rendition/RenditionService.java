@@ -0,0 +1,361 @@
+package com.example.imageservice.rendition;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.service.ImageLifecycleListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Generates resized and re-encoded renditions of images with ImageIO.
+ * <p>
+ * Results are cached twice, both LRU and bounded by total bytes: encoded bytes in memory, and
+ * files under the rendition directory, which survive restarts. Concurrent requests for the same
+ * rendition wait for a single generation. Renditions of an image are dropped when it is deleted.
+ */
+@Service
+public class RenditionService implements ImageLifecycleListener {
+    public static final Set<String> FORMATS = Set.of("jpeg", "png");
+
+    private final Path dir;
+    private final long diskCapacity;
+    private final long memoryCapacity;
+    private final int maxWidth;
+    private final long maxSourcePixels;
+
+    // Both LRU maps are access-ordered and guarded by their own monitor
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private final LinkedHashMap<String, byte[]> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Rendition>> inFlight = new ConcurrentHashMap<>();
+
+    public RenditionService(@Value("${imageservice.rendition.dir:renditions}") String dir,
+                            @Value("${imageservice.rendition.disk-cache-bytes:268435456}") long diskCapacity,
+                            @Value("${imageservice.rendition.memory-cache-bytes:33554432}") long memoryCapacity,
+                            @Value("${imageservice.rendition.max-width:4096}") int maxWidth,
+                            @Value("${imageservice.rendition.max-source-pixels:50000000}") long maxSourcePixels) {
+        this.dir = Paths.get(dir);
+        this.diskCapacity = diskCapacity;
+        this.memoryCapacity = memoryCapacity;
+        this.maxWidth = maxWidth;
+        this.maxSourcePixels = maxSourcePixels;
+        try {
+            Files.createDirectories(this.dir);
+            loadDiskEntries();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open rendition cache " + dir, e);
+        }
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * Get a rendition of an image, generating it if it is not cached.
+     * @param image Source image
+     * @param width Target width in pixels, or null to keep the original width up to the maximum
+     *              width; never upscales
+     * @param format One of {@link #FORMATS}
+     * @return The rendition, or null if the source format cannot be decoded by ImageIO
+     * @throws SourceTooLargeException If the source has more pixels than the configured maximum
+     */
+    public Rendition render(Image image, Integer width, String format) throws IOException {
+        String key = key(image.getId(), width, format);
+        byte[] cached = memoryGet(key);
+        if (cached != null) {
+            return new Rendition(cached, mimeType(format));
+        }
+        cached = diskGet(key);
+        if (cached != null) {
+            memoryPut(key, cached);
+            return new Rendition(cached, mimeType(format));
+        }
+
+        CompletableFuture<Rendition> mine = new CompletableFuture<>();
+        CompletableFuture<Rendition> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw e;
+            }
+        }
+        try {
+            byte[] bytes = generate(Paths.get(image.getPath()), width, format);
+            Rendition rendition = bytes != null ? new Rendition(bytes, mimeType(format)) : null;
+            if (bytes != null) {
+                diskPut(key, bytes);
+                memoryPut(key, bytes);
+            }
+            mine.complete(rendition);
+            return rendition;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Override
+    public void imageDeleted(Image image, ImageMetadata metadata) {
+        invalidate(image.getId());
+    }
+
+    /**
+     * Drop every cached rendition of an image.
+     */
+    public void invalidate(String id) {
+        String prefix = id + "_";
+        synchronized (memoryEntries) {
+            Iterator<Map.Entry<String, byte[]>> it = memoryEntries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, byte[]> e = it.next();
+                if (e.getKey().startsWith(prefix)) {
+                    memoryBytes -= e.getValue().length;
+                    it.remove();
+                }
+            }
+        }
+        synchronized (diskEntries) {
+            Iterator<Map.Entry<String, Long>> it = diskEntries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> e = it.next();
+                if (e.getKey().startsWith(prefix)) {
+                    diskBytes -= e.getValue();
+                    deleteQuietly(dir.resolve(e.getKey()));
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode, scale and encode. Large sources are subsampled while decoding so the full
+     * raster never has to be held in memory, and sources whose header declares more pixels than
+     * the maximum are refused before any pixel data is read.
+     */
+    private byte[] generate(Path source, Integer width, String format) throws IOException {
+        BufferedImage decoded;
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxSourcePixels) {
+                    throw new SourceTooLargeException(sourceWidth, sourceHeight);
+                }
+                int target = Math.min(width == null ? maxWidth : width, sourceWidth);
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Keep at least twice the target resolution for a clean final downscale
+                int subsampling = Math.max(1, sourceWidth / (target * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                decoded = reader.read(0, param);
+                decoded = scale(decoded, target, "jpeg".equals(format));
+            } finally {
+                reader.dispose();
+            }
+        }
+        return encode(decoded, format);
+    }
+
+    private static BufferedImage scale(BufferedImage src, int targetWidth, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        // Halve step by step so bilinear filtering does not skip source pixels
+        do {
+            int nextW = Math.max(targetWidth, w / 2);
+            int nextH = Math.max(1, (int) Math.round((double) h * nextW / w));
+            if (nextW == w && current.getType() == type) {
+                break;
+            }
+            BufferedImage next = new BufferedImage(nextW, nextH, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (opaque) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, nextW, nextH);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, nextW, nextH, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            w = nextW;
+            h = nextH;
+        } while (w > targetWidth);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage img, String format) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(0.85f);
+            }
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] memoryGet(String key) {
+        synchronized (memoryEntries) {
+            return memoryEntries.get(key);
+        }
+    }
+
+    private void memoryPut(String key, byte[] bytes) {
+        if (bytes.length > memoryCapacity) {
+            return;
+        }
+        synchronized (memoryEntries) {
+            byte[] previous = memoryEntries.put(key, bytes);
+            memoryBytes += bytes.length - (previous != null ? previous.length : 0);
+            Iterator<Map.Entry<String, byte[]>> eldest = memoryEntries.entrySet().iterator();
+            while (memoryBytes > memoryCapacity && eldest.hasNext()) {
+                memoryBytes -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private byte[] diskGet(String key) {
+        synchronized (diskEntries) {
+            if (diskEntries.get(key) == null) {
+                return null;
+            }
+        }
+        try {
+            return Files.readAllBytes(dir.resolve(key));
+        } catch (IOException e) {
+            synchronized (diskEntries) {
+                Long size = diskEntries.remove(key);
+                if (size != null) {
+                    diskBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void diskPut(String key, byte[] bytes) throws IOException {
+        if (bytes.length > diskCapacity) {
+            return;
+        }
+        Path tmp = dir.resolve("." + key + ".tmp");
+        Files.write(tmp, bytes);
+        Files.move(tmp, dir.resolve(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        synchronized (diskEntries) {
+            Long previous = diskEntries.put(key, (long) bytes.length);
+            diskBytes += bytes.length - (previous != null ? previous : 0);
+            Iterator<Map.Entry<String, Long>> eldest = diskEntries.entrySet().iterator();
+            while (diskBytes > diskCapacity && eldest.hasNext()) {
+                Map.Entry<String, Long> e = eldest.next();
+                diskBytes -= e.getValue();
+                deleteQuietly(dir.resolve(e.getKey()));
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Re-index renditions left from a previous run, oldest first so LRU order roughly holds.
+     */
+    private void loadDiskEntries() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Files::isRegularFile)
+                .map(path -> {
+                    try {
+                        if (path.getFileName().toString().startsWith(".")) {
+                            Files.deleteIfExists(path);
+                            return null;
+                        }
+                        return Map.entry(path, Files.readAttributes(path, BasicFileAttributes.class));
+                    } catch (IOException e) {
+                        return null;
+                    }
+                })
+                .filter(e -> e != null)
+                .sorted(Comparator.comparing(e -> e.getValue().lastModifiedTime()))
+                .forEach(e -> {
+                    diskEntries.put(e.getKey().getFileName().toString(), e.getValue().size());
+                    diskBytes += e.getValue().size();
+                });
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Orphaned files are re-indexed and evicted on next start
+        }
+    }
+
+    private static String key(String id, Integer width, String format) {
+        return id + "_w" + (width == null ? "orig" : width) + "." + format;
+    }
+
+    private static String mimeType(String format) {
+        return "image/" + format;
+    }
+
+    /**
+     * The source image is too large to be decoded for a rendition.
+     */
+    public static class SourceTooLargeException extends IOException {
+        public SourceTooLargeException(int width, int height) {
+            super("Image is too large to render: " + width + "x" + height);
+        }
+    }
+}
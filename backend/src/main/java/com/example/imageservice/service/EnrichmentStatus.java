@@ -0,0 +1,8 @@
+package com.example.imageservice.service;
+
+/**
+ * Progress of the background metadata enrichment. {@code pending} images are waiting for or in
+ * one of the stages; {@code enriched} went through both; {@code failed} could not be read and
+ * are retried on the next startup.
+ */
+public record EnrichmentStatus(long pending, long enriched, long failed) {}
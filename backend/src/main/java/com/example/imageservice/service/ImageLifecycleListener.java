@@ -0,0 +1,22 @@
+package com.example.imageservice.service;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+
+/**
+ * Hook for components that keep derived state per image (caches, renditions, indexes).
+ * Beans implementing this interface are called by the image service after the change has
+ * been applied; implementations must be quick and must not throw.
+ */
+public interface ImageLifecycleListener {
+    default void imageSaved(Image image, ImageMetadata metadata) {}
+
+    default void imageDeleted(Image image, ImageMetadata metadata) {}
+
+    default void metadataUpdated(Image image, ImageMetadata metadata) {}
+
+    /**
+     * The image's file was replaced by a copy with the same content at another path.
+     */
+    default void imageMoved(Image from, Image to) {}
+}
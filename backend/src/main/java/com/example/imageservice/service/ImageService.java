@@ -1,15 +1,30 @@
 package com.example.imageservice.service;
 
+import com.example.imageservice.index.ImageQuery;
+import com.example.imageservice.index.SimilarImage;
 import com.example.imageservice.model.Image;
 import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.storage.BlobStore;
 import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 
 public interface ImageService {
     Image saveImage(MultipartFile file);
     List<Image> getAllImages();
+    Iterator<Image> findImages(ImageQuery query, String after);
     Image getImage(String id);
+    Image fetchImage(String id) throws IOException;
+    void putReplica(Image image, ImageMetadata metadata);
+    List<SimilarImage> findSimilar(String id, int maxDistance, int limit);
     void deleteImage(String id);
     ImageMetadata getImageMetadata(String id);
     ImageMetadata setImageMetadata(String id, ImageMetadata metadata);
+    BlobStore.Stats getStorageStats();
+    IndexStatus getIndexStatus();
+    ReclaimStatus getReclaimStatus();
+    MigrationStatus getMigrationStatus();
+    EnrichmentStatus getEnrichmentStatus();
 }
@@ -0,0 +1,9 @@
+package com.example.imageservice.service;
+
+/**
+ * Progress of the startup index warm-up. Until {@code ready} the image list may be incomplete.
+ * {@code unchangedFiles} were found with the size and modification time already on record and
+ * were not read; {@code changedFiles} were new or modified and have been (re)indexed.
+ */
+public record IndexStatus(boolean ready, int images, long scannedFiles, long unchangedFiles, long changedFiles,
+                          long elapsedMillis) {}
@@ -0,0 +1,8 @@
+package com.example.imageservice.service;
+
+/**
+ * Progress of moving images stored as flat {@code <id>_<name>} files into the sharded blob
+ * store. {@code remaining} images are still to be moved while {@code running}; images that
+ * {@code failed} stay in the flat layout and are retried on the next startup.
+ */
+public record MigrationStatus(boolean running, long remaining, long migrated, long failed) {}
@@ -0,0 +1,13 @@
+package com.example.imageservice.service;
+
+/**
+ * Progress of the background removal of deleted images' files. {@code pending} files are queued
+ * or waiting ({@code retrying}) for a retry or, for files of migrated images, a grace period;
+ * {@code reclaimed} counts deleted images' files removed and their tombstones purged,
+ * {@code failures} failed attempts. The orphan sweep last finished at
+ * {@code lastSweep} (epoch millis, 0 if it has not run) and has so far removed
+ * {@code orphanFiles} blob files no image referred to and {@code missingFiles} index entries
+ * whose file had disappeared.
+ */
+public record ReclaimStatus(long pending, long retrying, long reclaimed, long failures, long orphanFiles,
+                            long missingFiles, long lastSweep) {}
@@ -0,0 +1,57 @@
+package com.example.imageservice.service.impl;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Finds the most common colour of an image, for placeholders shown while it loads.
+ * <p>
+ * Pixels are counted in a 4-bit-per-channel histogram and the result is the average of the
+ * fullest bin, so slightly different shades of the same colour count together. Mostly
+ * transparent pixels are ignored.
+ */
+public final class DominantColor {
+    private static final int BITS = 4;
+    private static final int BINS = 1 << (3 * BITS);
+
+    private DominantColor() {}
+
+    /**
+     * @param image Usually a reduced decode; every pixel is visited
+     * @return The colour as {@code #rrggbb}, or null if the image is entirely transparent
+     */
+    public static String of(BufferedImage image) {
+        int[] counts = new int[BINS];
+        long[] red = new long[BINS];
+        long[] green = new long[BINS];
+        long[] blue = new long[BINS];
+        int[] row = new int[image.getWidth()];
+        boolean alpha = image.getColorModel().hasAlpha();
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int argb : row) {
+                if (alpha && (argb >>> 24) < 128) {
+                    continue;
+                }
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                int bin = (r >> (8 - BITS)) << (2 * BITS) | (g >> (8 - BITS)) << BITS | b >> (8 - BITS);
+                counts[bin]++;
+                red[bin] += r;
+                green[bin] += g;
+                blue[bin] += b;
+            }
+        }
+        int best = 0;
+        for (int bin = 1; bin < BINS; bin++) {
+            if (counts[bin] > counts[best]) {
+                best = bin;
+            }
+        }
+        int n = counts[best];
+        if (n == 0) {
+            return null;
+        }
+        return String.format("#%02x%02x%02x", red[best] / n, green[best] / n, blue[best] / n);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.imageservice.service.impl;
+
+import com.example.imageservice.config.ExecutionMode;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.persistence.ImageRecord;
+import com.example.imageservice.service.EnrichmentStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fills in what can be learned from an image's content, in the background and off the upload path.
+ * <p>
+ * Each image passes two stages on a fixed pool of workers. The header stage reads the dimensions,
+ * EXIF orientation and descriptive EXIF fields without decoding pixels; the pixel stage decodes a
+ * reduced copy for the perceptual hash and the dominant colour. Every stage merges its results
+ * into the image's current metadata and announces them, so clients can size frames as soon as
+ * the header has been read. Header work is taken before pixel work, which keeps layout
+ * information for new uploads quick while a large backlog is being decoded.
+ */
+class EnrichmentPipeline {
+    private static final Logger log = LoggerFactory.getLogger(EnrichmentPipeline.class);
+
+    /** Merges a stage's results into an image's metadata. */
+    @FunctionalInterface
+    interface Updater {
+        /**
+         * Apply the changes to a copy of the image's current metadata, unless the image is gone
+         * or its content is no longer the one described by {@code analysed}.
+         */
+        void update(String id, ImageMetadata analysed, Consumer<ImageMetadata> changes);
+    }
+
+    private enum Stage { HEADER, PIXELS }
+
+    /** One stage for one image; header stages sort first, then in order of arrival. */
+    private final class Task implements Runnable, Comparable<Task> {
+        final String id;
+        final Stage stage;
+        final long order = arrivals.incrementAndGet();
+
+        Task(String id, Stage stage) {
+            this.id = id;
+            this.stage = stage;
+        }
+
+        @Override
+        public void run() {
+            boolean next = false;
+            try {
+                next = stage == Stage.HEADER ? header(id) : pixels(id);
+            } catch (IOException | RuntimeException e) {
+                // ImageIO reports some corrupt files with runtime exceptions
+                failed.incrementAndGet();
+                log.debug("Failed to enrich image {}", id, e);
+            }
+            if (next && submit(new Task(id, Stage.PIXELS))) {
+                return;
+            }
+            queued.remove(id);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byStage = stage.compareTo(other.stage);
+            return byStage != 0 ? byStage : Long.compare(order, other.order);
+        }
+    }
+
+    private final Function<String, ImageRecord> lookup;
+    private final Updater updater;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicLong arrivals = new AtomicLong();
+    private final AtomicLong enriched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param lookup The image's current file and metadata, or null if it is gone
+     */
+    EnrichmentPipeline(Function<String, ImageRecord> lookup, Updater updater, int workers) {
+        this.lookup = lookup;
+        this.updater = updater;
+        // The queue only holds ids, so it is not bounded; the number of decoding threads is
+        this.executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                ExecutionMode.daemonThreads("image-enricher-"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Change the number of worker threads.
+     */
+    void setWorkers(int workers) {
+        int size = Math.max(1, workers);
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Queue an image for enrichment; does nothing if it is already queued.
+     */
+    void enqueue(String id) {
+        if (queued.add(id) && !submit(new Task(id, Stage.HEADER))) {
+            queued.remove(id);
+        }
+    }
+
+    /**
+     * Whether the metadata is missing anything the pipeline can fill in.
+     */
+    static boolean needsEnrichment(ImageMetadata metadata) {
+        return isImage(metadata) && (needsHeader(metadata) || needsPixels(metadata));
+    }
+
+    /**
+     * Run both stages on the calling thread. Package-private so tests can run it synchronously.
+     */
+    void enrich(String id) throws IOException {
+        if (header(id)) {
+            pixels(id);
+        }
+    }
+
+    EnrichmentStatus status() {
+        return new EnrichmentStatus(queued.size(), enriched.get(), failed.get());
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return Whether the image should go on to the pixel stage
+     */
+    private boolean header(String id) throws IOException {
+        ImageRecord record = lookup.apply(id);
+        if (record == null || !isImage(record.metadata())) {
+            return false;
+        }
+        ImageMetadata metadata = record.metadata();
+        if (needsHeader(metadata)) {
+            ImageHeader header = ImageHeader.read(path(record), metadata.getMimeType());
+            if (header == null) {
+                // No reader for this format; decoding the pixels would fail the same way
+                return false;
+            }
+            updater.update(id, metadata, updated -> {
+                updated.setWidth(header.width());
+                updated.setHeight(header.height());
+                updated.setOrientation(header.orientation());
+                updated.setExif(header.exif());
+            });
+        }
+        return needsPixels(metadata);
+    }
+
+    private boolean pixels(String id) throws IOException {
+        ImageRecord record = lookup.apply(id);
+        if (record == null || !isImage(record.metadata()) || !needsPixels(record.metadata())) {
+            return false;
+        }
+        BufferedImage thumbnail = PerceptualHash.decodeThumbnail(path(record));
+        if (thumbnail == null) {
+            return false;
+        }
+        String hash = PerceptualHash.format(PerceptualHash.hash(thumbnail));
+        String color = DominantColor.of(thumbnail);
+        updater.update(id, record.metadata(), updated -> {
+            updated.setPerceptualHash(hash);
+            updated.setDominantColor(color);
+        });
+        enriched.incrementAndGet();
+        return false;
+    }
+
+    private boolean submit(Task task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            return false;
+        }
+    }
+
+    private static Path path(ImageRecord record) {
+        return Paths.get(record.image().getPath());
+    }
+
+    private static boolean isImage(ImageMetadata metadata) {
+        return metadata != null && metadata.getMimeType() != null && metadata.getMimeType().startsWith("image/");
+    }
+
+    private static boolean needsHeader(ImageMetadata metadata) {
+        return metadata.getWidth() == null;
+    }
+
+    private static boolean needsPixels(ImageMetadata metadata) {
+        return metadata.getPerceptualHash() == null || metadata.getDominantColor() == null;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.imageservice.service.impl;
+
+import com.example.imageservice.config.ExecutionMode;
+import com.example.imageservice.service.ReclaimStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Removes the files of deleted images in the background.
+ * <p>
+ * Deleting an image only writes a tombstone and queues its file here, so the request does not
+ * wait for the file system. Each run deletes queued files in batches of {@link #BATCH_SIZE} and
+ * purges the tombstones of a batch with one durability barrier. A file that cannot be deleted
+ * keeps its tombstone and is retried with exponential backoff; work lost in a crash is queued
+ * again from the tombstones on the next startup.
+ * <p>
+ * Files replaced by a copy elsewhere (see {@link LegacyMigrator}) have no tombstone and are
+ * removed after a grace period instead, so downloads that already resolved them still succeed.
+ */
+class FileReclaimer {
+    static final int BATCH_SIZE = 256;
+    private static final long MAX_RETRY_MILLIS = 300_000;
+
+    private static final Logger log = LoggerFactory.getLogger(FileReclaimer.class);
+
+    /** Deletes one file, throwing to have it retried. */
+    @FunctionalInterface
+    interface FileAction {
+        void reclaim(Path path) throws IOException;
+    }
+
+    private record Task(String id, Path path, int attempts, long notBefore) {}
+
+    private final FileAction action;
+    private final Consumer<List<String>> purge;
+    private final long retryMillis;
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final ReentrantLock running = new ReentrantLock();
+    private final List<Task> retries = new ArrayList<>(); // not yet due; guarded by running
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(ExecutionMode.daemonThreads("file-reclaimer-"));
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile int retrying;
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong orphanFiles = new AtomicLong();
+    private final AtomicLong missingFiles = new AtomicLong();
+    private volatile long lastSweep;
+
+    /**
+     * @param action Deletes a file
+     * @param purge Drops the tombstones of reclaimed image ids
+     * @param retryMillis Delay before the first retry of a failed file, doubled on each failure
+     */
+    FileReclaimer(FileAction action, Consumer<List<String>> purge, long retryMillis) {
+        this.action = action;
+        this.purge = purge;
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * Queue the file of a deleted image. Constant time; the file is removed by a later run.
+     */
+    void enqueue(String id, Path path) {
+        enqueue(id, path, 0);
+    }
+
+    /**
+     * Queue a file to be removed once {@code delayMillis} have passed.
+     * @param id Image whose tombstone to purge afterwards, or null if the file has none
+     */
+    void enqueue(String id, Path path, long delayMillis) {
+        queue.add(new Task(id, path, 0, delayMillis > 0 ? System.currentTimeMillis() + delayMillis : 0));
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Start reclaiming queued files every {@code intervalMillis}, and run the orphan sweep now
+     * and then every {@code sweepIntervalMillis} (0 for only once). Later calls do nothing.
+     */
+    void start(long intervalMillis, Runnable sweep, long sweepIntervalMillis) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::reclaim, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        Runnable safeSweep = () -> {
+            try {
+                sweep.run();
+            } catch (RuntimeException e) {
+                log.warn("Orphan sweep failed", e);
+            }
+        };
+        if (sweepIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(safeSweep, 0, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(safeSweep);
+        }
+    }
+
+    /**
+     * Delete every queued file and every failed one whose retry is due. Package-private so
+     * tests can run it synchronously.
+     */
+    void reclaim() {
+        running.lock();
+        try {
+            long now = System.currentTimeMillis();
+            List<Task> batch = new ArrayList<>(BATCH_SIZE);
+            for (Iterator<Task> it = retries.iterator(); it.hasNext() && batch.size() < BATCH_SIZE; ) {
+                Task task = it.next();
+                if (task.notBefore() <= now) {
+                    batch.add(task);
+                    it.remove();
+                }
+            }
+            while (true) {
+                Task task;
+                while (batch.size() < BATCH_SIZE && (task = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    if (task.notBefore() > now) {
+                        retries.add(task);
+                    } else {
+                        batch.add(task);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                process(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+            retrying = retries.size();
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private void process(List<Task> batch) {
+        List<String> done = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            try {
+                action.reclaim(task.path());
+                if (task.id() != null) {
+                    done.add(task.id());
+                }
+            } catch (IOException | RuntimeException e) {
+                failures.incrementAndGet();
+                int attempts = task.attempts() + 1;
+                long delay = Math.min(MAX_RETRY_MILLIS, retryMillis << Math.min(attempts - 1, 20));
+                retries.add(new Task(task.id(), task.path(), attempts, System.currentTimeMillis() + delay));
+                log.warn("Failed to delete file {} of deleted image {} (attempt {}), retrying in {} ms",
+                        task.path(), task.id(), attempts, delay, e);
+            }
+        }
+        if (done.isEmpty()) {
+            return;
+        }
+        try {
+            purge.accept(done);
+            reclaimed.addAndGet(done.size());
+        } catch (RuntimeException e) {
+            // The files are gone; the tombstones are queued and purged again on the next startup
+            log.warn("Failed to purge {} tombstones", done.size(), e);
+        }
+    }
+
+    /**
+     * Record the outcome of an orphan sweep.
+     */
+    void sweepFinished(long orphans, long missing) {
+        orphanFiles.addAndGet(orphans);
+        missingFiles.addAndGet(missing);
+        lastSweep = System.currentTimeMillis();
+    }
+
+    ReclaimStatus status() {
+        int waiting = retrying;
+        return new ReclaimStatus(queued.get() + waiting, waiting, reclaimed.get(), failures.get(),
+                orphanFiles.get(), missingFiles.get(), lastSweep);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.imageservice.service.impl;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What an image's headers say about it, read without decoding any pixels.
+ * <p>
+ * Dimensions come from the ImageIO reader's header parsing. For JPEG files the EXIF block in the
+ * APP1 segment before the image data is parsed for the orientation and a few descriptive fields;
+ * location tags are deliberately not read.
+ * @param width Width as displayed, i.e. swapped with the height when the orientation rotates by 90 degrees
+ * @param height Height as displayed
+ * @param orientation EXIF orientation (1-8), or null if absent
+ * @param exif Descriptive EXIF fields by name, or null if absent
+ */
+record ImageHeader(int width, int height, Integer orientation, Map<String, String> exif) {
+    private static final byte[] EXIF_PREFIX = {'E', 'x', 'i', 'f', 0, 0};
+
+    // TIFF tags: IFD0, then the Exif sub-IFD
+    private static final int MAKE = 0x010F;
+    private static final int MODEL = 0x0110;
+    private static final int ORIENTATION = 0x0112;
+    private static final int DATE_TIME = 0x0132;
+    private static final int EXIF_IFD = 0x8769;
+    private static final int EXPOSURE_TIME = 0x829A;
+    private static final int F_NUMBER = 0x829D;
+    private static final int ISO = 0x8827;
+    private static final int DATE_TIME_ORIGINAL = 0x9003;
+    private static final int FOCAL_LENGTH = 0x920A;
+    private static final int LENS_MODEL = 0xA434;
+
+    /**
+     * @return The header, or null if ImageIO has no reader for the file
+     */
+    static ImageHeader read(Path path, String mimeType) throws IOException {
+        int width;
+        int height;
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+        Map<String, String> exif = null;
+        Integer orientation = null;
+        if ("image/jpeg".equals(mimeType)) {
+            byte[] tiff = readExifSegment(path);
+            if (tiff != null) {
+                Map<String, String> fields = new LinkedHashMap<>();
+                orientation = parseTiff(tiff, fields);
+                exif = fields.isEmpty() ? null : Collections.unmodifiableMap(fields);
+            }
+        }
+        if (orientation != null && orientation >= 5 && orientation <= 8) {
+            // Transposed or rotated by 90 degrees: displayed sideways
+            return new ImageHeader(height, width, orientation, exif);
+        }
+        return new ImageHeader(width, height, orientation, exif);
+    }
+
+    /**
+     * Walk the JPEG marker segments up to the start of the image data.
+     * @return The TIFF structure inside the EXIF APP1 segment, or null if there is none
+     */
+    private static byte[] readExifSegment(Path path) throws IOException {
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 8192))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return null;
+            }
+            while (true) {
+                if (in.readUnsignedByte() != 0xFF) {
+                    return null;
+                }
+                int marker = in.readUnsignedByte();
+                while (marker == 0xFF) {
+                    // Fill bytes before the marker
+                    marker = in.readUnsignedByte();
+                }
+                if (marker == 0xDA || marker == 0xD9) {
+                    // Start of scan or end of image: no EXIF ahead
+                    return null;
+                }
+                if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                    continue;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return null;
+                }
+                if (marker == 0xE1 && length > EXIF_PREFIX.length) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    if (startsWithExif(segment)) {
+                        byte[] tiff = new byte[length - EXIF_PREFIX.length];
+                        System.arraycopy(segment, EXIF_PREFIX.length, tiff, 0, tiff.length);
+                        return tiff;
+                    }
+                    continue;
+                }
+                in.skipNBytes(length);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static boolean startsWithExif(byte[] segment) {
+        for (int i = 0; i < EXIF_PREFIX.length; i++) {
+            if (segment[i] != EXIF_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collect the descriptive fields of IFD0 and the Exif sub-IFD. Malformed offsets end the
+     * parse with whatever was read so far.
+     * @return The orientation, or null if absent
+     */
+    private static Integer parseTiff(byte[] tiff, Map<String, String> fields) {
+        if (tiff.length < 8) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(tiff);
+        if (tiff[0] == 'I' && tiff[1] == 'I') {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff[0] != 'M' || tiff[1] != 'M') {
+            return null;
+        }
+        Integer orientation = null;
+        try {
+            int exifOffset = -1;
+            int ifd = buffer.getInt(4);
+            int count = buffer.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                int entry = ifd + 2 + i * 12;
+                int tag = buffer.getShort(entry) & 0xFFFF;
+                switch (tag) {
+                    case MAKE -> put(fields, "make", ascii(buffer, entry));
+                    case MODEL -> put(fields, "model", ascii(buffer, entry));
+                    case DATE_TIME -> put(fields, "dateTime", ascii(buffer, entry));
+                    case ORIENTATION -> {
+                        int value = buffer.getShort(entry + 8) & 0xFFFF;
+                        orientation = value >= 1 && value <= 8 ? value : null;
+                    }
+                    case EXIF_IFD -> exifOffset = buffer.getInt(entry + 8);
+                    default -> { }
+                }
+            }
+            if (exifOffset > 0) {
+                count = buffer.getShort(exifOffset) & 0xFFFF;
+                for (int i = 0; i < count; i++) {
+                    int entry = exifOffset + 2 + i * 12;
+                    int tag = buffer.getShort(entry) & 0xFFFF;
+                    switch (tag) {
+                        case DATE_TIME_ORIGINAL -> put(fields, "dateTimeOriginal", ascii(buffer, entry));
+                        case EXPOSURE_TIME -> put(fields, "exposureTime", exposure(buffer, entry));
+                        case F_NUMBER -> put(fields, "fNumber", rational(buffer, entry));
+                        case FOCAL_LENGTH -> put(fields, "focalLength", rational(buffer, entry));
+                        case ISO -> put(fields, "iso", Integer.toString(buffer.getShort(entry + 8) & 0xFFFF));
+                        case LENS_MODEL -> put(fields, "lensModel", ascii(buffer, entry));
+                        default -> { }
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt EXIF
+        }
+        return orientation;
+    }
+
+    private static void put(Map<String, String> fields, String name, String value) {
+        if (value != null && !value.isEmpty()) {
+            fields.put(name, value);
+        }
+    }
+
+    private static String ascii(ByteBuffer buffer, int entry) {
+        int length = buffer.getInt(entry + 4);
+        if (length <= 0 || length > 256) {
+            return null;
+        }
+        // Up to four bytes are stored in the entry itself
+        int offset = length <= 4 ? entry + 8 : buffer.getInt(entry + 8);
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        int end = 0;
+        while (end < length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, 0, end, StandardCharsets.US_ASCII).trim();
+    }
+
+    private static String rational(ByteBuffer buffer, int entry) {
+        int offset = buffer.getInt(entry + 8);
+        long numerator = buffer.getInt(offset) & 0xFFFFFFFFL;
+        long denominator = buffer.getInt(offset + 4) & 0xFFFFFFFFL;
+        if (denominator == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(numerator)
+                .divide(BigDecimal.valueOf(denominator), 2, RoundingMode.HALF_UP)
+                .stripTrailingZeros().toPlainString();
+    }
+
+    /** Exposure times below a second read as the usual {@code 1/250}. */
+    private static String exposure(ByteBuffer buffer, int entry) {
+        int offset = buffer.getInt(entry + 8);
+        long numerator = buffer.getInt(offset) & 0xFFFFFFFFL;
+        long denominator = buffer.getInt(offset + 4) & 0xFFFFFFFFL;
+        if (numerator > 0 && numerator < denominator) {
+            return "1/" + Math.round((double) denominator / numerator);
+        }
+        return rational(buffer, entry);
+    }
+}
@@ -1,42 +1,132 @@
 package com.example.imageservice.service.impl;
 
+import com.example.imageservice.cluster.ClusterService;
+import com.example.imageservice.index.ImageIndex;
+import com.example.imageservice.index.ImageQuery;
+import com.example.imageservice.index.SimilarImage;
 import com.example.imageservice.model.Image;
 import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.service.EnrichmentStatus;
+import com.example.imageservice.service.ImageLifecycleListener;
 import com.example.imageservice.service.ImageService;
+import com.example.imageservice.service.IndexStatus;
+import com.example.imageservice.service.MigrationStatus;
+import com.example.imageservice.service.ReclaimStatus;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
+import com.example.imageservice.notification.ImageEvent;
 import com.example.imageservice.notification.ImageNotificationService;
+import com.example.imageservice.persistence.ImageRecord;
+import com.example.imageservice.persistence.InMemoryMetadataRepository;
+import com.example.imageservice.persistence.MetadataRepository;
+import com.example.imageservice.storage.BlobStore;
+import com.example.imageservice.storage.StagedUpload;
+import com.example.imageservice.storage.UploadStager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Service implementation for handling image storage, metadata, and notifications.
- * Uses in-memory storage for metadata and file system for image files.
+ * Serves metadata from memory, persists it through a {@link MetadataRepository} and keeps
+ * image files on the file system.
+ * <p>
+ * Uploads are stored in the sharded, content-addressed {@link BlobStore} with their original
+ * names in metadata. Images from before it, kept as flat {@code <id>_<name>} files in the image
+ * directory, are still indexed and served, and are moved into the blob store in the background
+ * after startup.
  */
 @Service
 public class ImageServiceImpl implements ImageService {
+    private static final Logger log = LoggerFactory.getLogger(ImageServiceImpl.class);
+
     // In-memory stores for images and metadata
-    private final Map<String, Image> imageStore = new LinkedHashMap<>();
+    private final ImageIndex imageStore = new ImageIndex();
     private final Map<String, ImageMetadata> metadataStore = new ConcurrentHashMap<>();
     private final String imageDir = "images";
+    private final UploadStager uploadStager = new UploadStager(Paths.get(imageDir), 64 * 1024);
 
     @Autowired
     ImageNotificationService notificationService; // package-private for test injection
+    @Autowired
+    MetadataRepository repository = new InMemoryMetadataRepository(); // package-private for test injection
+    @Autowired
+    BlobStore blobStore = new BlobStore(Paths.get(imageDir, "blobs")); // package-private for test injection
+    @Autowired(required = false)
+    List<ImageLifecycleListener> listeners = List.of(); // package-private for test injection
+    @Autowired(required = false)
+    ClusterService cluster; // package-private for test injection; null outside Spring
+    @Autowired(required = false)
+    ApplicationEventPublisher events; // package-private for test injection; null outside Spring
+    @Value("${imageservice.reclaim.interval-millis:200}")
+    long reclaimIntervalMillis = 200; // package-private for test injection
+    @Value("${imageservice.reclaim.sweep-interval-millis:3600000}")
+    long sweepIntervalMillis = 3_600_000; // package-private for test injection
+    @Value("${imageservice.reclaim.orphan-grace-millis:3600000}")
+    long orphanGraceMillis = 3_600_000; // package-private for test injection
+    @Value("${imageservice.storage.migrate-legacy:true}")
+    boolean migrateLegacy = true; // package-private for test injection
+    @Value("${imageservice.storage.migration-files-per-second:100}")
+    int migrationFilesPerSecond = 100; // package-private for test injection
+    @Value("${imageservice.storage.legacy-grace-millis:60000}")
+    long legacyGraceMillis = 60_000; // package-private for test injection
+    @Value("${imageservice.enrichment.workers:2}")
+    int enrichmentWorkers = 2; // package-private for test injection
+
+    // Removes deleted images' files in the background; package-private so tests can drive it
+    final FileReclaimer reclaimer = new FileReclaimer(this::reclaimFile, ids -> repository.purge(ids), 1000);
+    // Moves flat legacy files into the blob store; package-private so tests can drive it
+    final LegacyMigrator migrator = new LegacyMigrator(this::migrateToBlobStore);
+    // Reads dimensions, EXIF, colour and perceptual hash after the fact; package-private so tests can drive it
+    final EnrichmentPipeline enricher = new EnrichmentPipeline(this::currentRecord, this::applyEnrichment, 2);
+
+    // Serialize deletes, metadata updates and migration of the same image
+    private final ReentrantLock[] writeLocks = new ReentrantLock[64];
+    // Copies of other nodes' files in progress, so concurrent downloads share one
+    private final Map<String, CompletableFuture<Image>> fetches = new ConcurrentHashMap<>();
+
+    // Startup warm-up progress; readiness changes are published under the lock
+    private final Object readinessLock = new Object();
+    private volatile boolean ready;
+    private volatile long warmupStarted;
+    private volatile long warmupMillis;
+    private final AtomicLong scannedFiles = new AtomicLong();
+    private final AtomicLong unchangedFiles = new AtomicLong();
+    private final AtomicLong changedFiles = new AtomicLong();
 
     /**
      * Ensure the image directory exists on service initialization.
      */
     public ImageServiceImpl() {
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
         File dir = new File(imageDir);
         if (!dir.exists()) {
             dir.mkdirs();
@@ -50,27 +140,61 @@ public class ImageServiceImpl implements ImageService {
      */
     public Image saveImage(MultipartFile file) {
         String id = UUID.randomUUID().toString();
-        String filename = id + "_" + file.getOriginalFilename();
-        Path path = Paths.get(imageDir, filename);
-        try (FileOutputStream fos = new FileOutputStream(path.toFile())) {
-            fos.write(file.getBytes());
+        String originalName = file.getOriginalFilename();
+        StagedUpload upload;
+        Path path;
+        try (InputStream in = file.getInputStream()) {
+            // Stream through a fixed buffer; the type is sniffed from the bytes, not the client's Content-Type
+            upload = uploadStager.stage(in);
+            // Identical content already on disk is shared instead of stored again
+            path = blobStore.commit(upload, uploadStager);
         } catch (IOException e) {
             throw new RuntimeException("Failed to save image", e);
         }
-        Image image = new Image(id, file.getOriginalFilename(), path.toString());
-        imageStore.put(id, image);
-        ImageMetadata metadata = new ImageMetadata(id, file.getOriginalFilename(), file.getContentType(), file.getSize());
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            lastModified = System.currentTimeMillis();
+        }
+        Image image = new Image(id, originalName, path.toString());
+        ImageMetadata metadata = new ImageMetadata(id, originalName, upload.mimeType(), upload.size(), lastModified);
+        metadata.setSha256(upload.sha256());
+        repository.put(image, metadata);
+        imageStore.put(image, metadata);
         metadataStore.put(id, metadata);
-        notificationService.notifyClients(image);
+        for (ImageLifecycleListener listener : listeners) {
+            listener.imageSaved(image, metadata);
+        }
+        notificationService.publish(ImageEvent.created(image, metadata));
+        // Decoding waits for a worker; the upload returns now
+        enricher.enqueue(id);
         return image;
     }
 
     @Override
     /**
-     * Get a list of all stored images.
+     * Get a list of all stored images in upload order.
+     * Returns the index's immutable snapshot, which is only rebuilt after a change.
      */
     public List<Image> getAllImages() {
-        return new ArrayList<>(imageStore.values());
+        return imageStore.values();
+    }
+
+    @Override
+    /**
+     * Page through images matching a query in upload order, starting after the given id.
+     */
+    public Iterator<Image> findImages(ImageQuery query, String after) {
+        return imageStore.find(query, after);
+    }
+
+    @Override
+    /**
+     * Find images whose perceptual hash is within maxDistance bits of the given image's.
+     */
+    public List<SimilarImage> findSimilar(String id, int maxDistance, int limit) {
+        return imageStore.similar(id, maxDistance, limit);
     }
 
     @Override
@@ -81,55 +205,574 @@ public class ImageServiceImpl implements ImageService {
         return imageStore.get(id);
     }
 
+    @Override
+    /**
+     * Get an image whose file is on this node. In cluster mode an image uploaded to another node
+     * is first copied from that node into the local blob store; later calls find it there.
+     */
+    public Image fetchImage(String id) throws IOException {
+        Image image = imageStore.get(id);
+        ImageMetadata metadata = metadataStore.get(id);
+        if (image == null || !isReplica(metadata) || Files.exists(Paths.get(image.getPath()))) {
+            return image;
+        }
+        CompletableFuture<Image> copy = new CompletableFuture<>();
+        CompletableFuture<Image> running = fetches.putIfAbsent(id, copy);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for image " + id, e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        try {
+            Image local = copyFromOwner(image, metadata);
+            copy.complete(local);
+            return local;
+        } catch (IOException | RuntimeException e) {
+            copy.completeExceptionally(e);
+            throw e;
+        } finally {
+            fetches.remove(id, copy);
+        }
+    }
+
+    private Image copyFromOwner(Image image, ImageMetadata metadata) throws IOException {
+        String id = image.getId();
+        StagedUpload upload;
+        try (InputStream in = cluster.fetch(metadata.getOwner(), id)) {
+            upload = uploadStager.stage(in);
+        }
+        if (metadata.getSha256() != null && !metadata.getSha256().equals(upload.sha256())) {
+            uploadStager.discard(upload);
+            throw new IOException("Image " + id + " from " + metadata.getOwner() + " does not match its hash");
+        }
+        Path blob = blobStore.commit(upload, uploadStager);
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            Image current = imageStore.get(id);
+            if (current != null && current.getPath().equals(blob.toString())) {
+                // The replica already held a reference to this blob; only the file was missing
+                blobStore.release(blob);
+                return current;
+            }
+            if (current == image) {
+                Image local = new Image(id, image.getName(), blob.toString());
+                ImageMetadata known = metadataStore.get(id);
+                repository.put(local, known);
+                imageStore.put(local, known);
+                return local;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Deleted or changed while copying
+        blobStore.release(blob);
+        return imageStore.get(id);
+    }
+
+    @Override
+    /**
+     * Add or update an image received from another cluster node. Metadata is taken as sent; the
+     * file stays on its owner until {@link #fetchImage} needs it. Clients are notified as for a
+     * local change.
+     * @throws IllegalArgumentException if the id or hash is malformed; both end up in file paths
+     */
+    public void putReplica(Image image, ImageMetadata metadata) {
+        String id = image.getId();
+        if (!Image.isValidId(id) || (metadata.getSha256() != null && !BlobStore.isHash(metadata.getSha256()))) {
+            throw new IllegalArgumentException("Malformed replica " + id);
+        }
+        Image stored;
+        boolean created = false;
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            stored = imageStore.get(id);
+            if (stored == null) {
+                // Where the file will be once copied; content without a hash is copied into the store too
+                Path path = metadata.getSha256() != null ? blobStore.pathFor(metadata.getSha256())
+                        : Paths.get(imageDir, id + ".remote");
+                if (blobStore.owns(path)) {
+                    blobStore.retain(path, metadata.getSize());
+                }
+                stored = new Image(id, image.getName(), path.toString());
+                repository.put(stored, metadata);
+                imageStore.put(stored, metadata);
+                created = true;
+            } else {
+                repository.updateMetadata(id, metadata);
+                imageStore.updateMetadata(id, metadata);
+            }
+            metadataStore.put(id, metadata);
+        } finally {
+            lock.unlock();
+        }
+        for (ImageLifecycleListener listener : listeners) {
+            if (created) {
+                listener.imageSaved(stored, metadata);
+            } else {
+                listener.metadataUpdated(stored, metadata);
+            }
+        }
+        notificationService.publish(created ? ImageEvent.created(stored, metadata) : ImageEvent.metadataUpdated(id, metadata));
+    }
+
+    /**
+     * Whether the image's file lives on another cluster node.
+     */
+    private boolean isReplica(ImageMetadata metadata) {
+        return cluster != null && metadata != null && cluster.isRemote(metadata.getOwner());
+    }
+
     @Override
     /**
      * Delete an image and its metadata by ID. Notifies clients of deletion.
+     * Only a tombstone is written here; the file is removed in the background.
      */
     public void deleteImage(String id) {
-        Image image = imageStore.remove(id);
-        metadataStore.remove(id);
+        deleteImageIf(id, image -> true);
+    }
+
+    /**
+     * Delete an image unless, under its write lock, it fails the condition.
+     * @return true if the image was deleted
+     */
+    private boolean deleteImageIf(String id, Predicate<Image> condition) {
+        Image image;
+        ImageMetadata metadata;
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            Image current = imageStore.get(id);
+            if (current != null && !condition.test(current)) {
+                return false;
+            }
+            image = imageStore.remove(id);
+            metadata = metadataStore.remove(id);
+            if (image != null) {
+                // The tombstone keeps the file path until the reclaimer has removed the file
+                repository.delete(id);
+                reclaimer.enqueue(id, Paths.get(image.getPath()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (image != null) {
+            for (ImageLifecycleListener listener : listeners) {
+                listener.imageDeleted(image, metadata);
+            }
+            notificationService.publish(ImageEvent.deleted(id));
+        }
+        return image != null;
+    }
+
+    private void reclaimFile(Path path) throws IOException {
+        if (blobStore.owns(path)) {
+            // Only removes the file once no other image shares the content
+            blobStore.release(path);
+        } else {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Move one image from its flat {@code <id>_<name>} file into the blob store. The flat file is
+     * removed only after a grace period, so downloads that already resolved it still succeed.
+     * @return false if the image is gone or already in the blob store
+     */
+    boolean migrateToBlobStore(String id) throws IOException {
+        Image image = imageStore.get(id);
+        if (image == null || blobStore.owns(Paths.get(image.getPath()))) {
+            return false;
+        }
+        Path legacy = Paths.get(image.getPath());
+        StagedUpload upload;
+        try (InputStream in = Files.newInputStream(legacy)) {
+            upload = uploadStager.stage(in);
+        }
+        Path blob = blobStore.commit(upload, uploadStager);
+        Image moved = null;
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            // Switch only if the image was neither deleted nor moved while the file was copied
+            if (imageStore.get(id) == image) {
+                ImageMetadata existing = metadataStore.get(id);
+                ImageMetadata metadata = existing != null ? new ImageMetadata(existing)
+                        : new ImageMetadata(id, image.getName(), null, 0, System.currentTimeMillis());
+                metadata.setMimeType(upload.mimeType());
+                metadata.setSize(upload.size());
+                metadata.setSha256(upload.sha256());
+                moved = new Image(id, image.getName(), blob.toString());
+                repository.put(moved, metadata);
+                imageStore.put(moved, metadata);
+                metadataStore.put(id, metadata);
+                reclaimer.enqueue(null, legacy, legacyGraceMillis);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (moved == null) {
+            blobStore.release(blob);
+            return false;
+        }
+        for (ImageLifecycleListener listener : listeners) {
+            listener.imageMoved(image, moved);
+        }
+        return true;
+    }
+
+    /**
+     * Queue every image whose metadata predates enrichment or is missing part of it. Runs on the
+     * warm-up thread once the index is ready.
+     */
+    private void enrichExisting() {
+        long queued = 0;
+        for (Image image : imageStore.values()) {
+            ImageMetadata metadata = metadataStore.get(image.getId());
+            // Replicas are enriched on their owner, which sends the results
+            if (EnrichmentPipeline.needsEnrichment(metadata) && !isReplica(metadata)) {
+                enricher.enqueue(image.getId());
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            log.info("Queued {} existing images for metadata enrichment", queued);
+        }
+    }
+
+    private ImageRecord currentRecord(String id) {
+        Image image = imageStore.get(id);
+        ImageMetadata metadata = metadataStore.get(id);
+        return image != null && metadata != null ? new ImageRecord(id, image, metadata) : null;
+    }
+
+    /**
+     * Merge enrichment results into the current metadata and announce them. Skipped if the
+     * image was deleted or its file replaced since it was analysed; client edits made meanwhile
+     * are kept.
+     */
+    private void applyEnrichment(String id, ImageMetadata analysed, Consumer<ImageMetadata> changes) {
+        ImageMetadata updated;
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            ImageMetadata current = metadataStore.get(id);
+            if (current == null || imageStore.get(id) == null || current.getSize() != analysed.getSize()
+                    || !Objects.equals(current.getSha256(), analysed.getSha256())) {
+                return;
+            }
+            updated = new ImageMetadata(current);
+            changes.accept(updated);
+            repository.updateMetadata(id, updated);
+            imageStore.updateMetadata(id, updated);
+            metadataStore.put(id, updated);
+        } finally {
+            lock.unlock();
+        }
+        Image image = imageStore.get(id);
         if (image != null) {
-            Path path = Paths.get(image.getPath());
+            for (ImageLifecycleListener listener : listeners) {
+                listener.metadataUpdated(image, updated);
+            }
+        }
+        if (notificationService != null) {
+            notificationService.publish(ImageEvent.metadataUpdated(id, updated));
+        }
+    }
+
+    private ReentrantLock writeLock(String id) {
+        return writeLocks[Math.floorMod(id.hashCode(), writeLocks.length)];
+    }
+
+    /**
+     * Remove index entries whose file has disappeared and, when the repository is durable, blob
+     * files that no image refers to. Runs after the warm-up and then periodically;
+     * package-private so tests can run it synchronously.
+     */
+    void sweepOrphans() {
+        long missing = 0;
+        for (Image image : imageStore.values()) {
+            if (deleteIfFileMissing(image)) {
+                missing++;
+            }
+        }
+        long orphans = 0;
+        // Without a durable repository the index starts empty after a restart, so blobs uploaded
+        // before it would all look unreferenced
+        if (repository.isDurable()) {
             try {
-                Files.deleteIfExists(path);
+                orphans = blobStore.deleteUnreferenced(orphanGraceMillis);
             } catch (IOException e) {
-                // Could log error here
+                log.warn("Failed to sweep blob directory", e);
             }
-            notificationService.notifyClients("deleted:" + id);
         }
+        if (missing > 0 || orphans > 0) {
+            log.info("Orphan sweep removed {} unreferenced blob files and {} images without a file", orphans, missing);
+        }
+        reclaimer.sweepFinished(orphans, missing);
     }
 
+    /**
+     * Delete an image seen with a missing file, unless it has moved on since it was seen: a
+     * migration or a replica update may have pointed it at another file, or it may have become a
+     * replica whose file is fetched on demand. Package-private for tests.
+     * @param seen The image as read from the index when its file was checked
+     * @return true if the image was deleted
+     */
+    boolean deleteIfFileMissing(Image seen) {
+        String path = seen.getPath();
+        // notExists rather than !exists: a file that cannot be checked is not reported missing
+        if (!Files.notExists(Paths.get(path))) {
+            return false;
+        }
+        boolean deleted = deleteImageIf(seen.getId(), current -> current.getPath().equals(path)
+                && !isReplica(metadataStore.get(current.getId())) && Files.notExists(Paths.get(path)));
+        if (deleted) {
+            log.info("File {} of image {} is missing; removed the image", path, seen.getId());
+        }
+        return deleted;
+    }
+
+    /**
+     * Start restoring the in-memory index in the background, so the application serves
+     * requests (with a partial list) while it warms up; {@link #getIndexStatus()} reports
+     * when it is complete.
+     */
     @PostConstruct
     public void loadImagesFromDisk() {
+        // Load balancers and probes keep traffic away until the index is complete
+        publishReadiness(ReadinessState.REFUSING_TRAFFIC);
+        Thread warmup = new Thread(this::warmIndex, "index-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+        enricher.setWorkers(enrichmentWorkers);
+    }
+
+    /**
+     * Spring Boot declares the application ready to accept traffic once it has started, which
+     * may be before the warm-up is done; refuse again until it is.
+     */
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        synchronized (readinessLock) {
+            if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC && !ready) {
+                publishReadiness(ReadinessState.REFUSING_TRAFFIC);
+            }
+        }
+    }
+
+    private void publishReadiness(ReadinessState state) {
+        if (events != null) {
+            AvailabilityChangeEvent.publish(events, this, state);
+        }
+    }
+
+    /**
+     * Restore the index: load the metadata repository (snapshot plus log replay), then scan the
+     * image directory in parallel for files added or modified outside the service. Files whose
+     * size and modification time match the stored metadata are not read again.
+     * Package-private so tests can run it synchronously.
+     */
+    void warmIndex() {
+        warmupStarted = System.currentTimeMillis();
+        ready = false;
+        scannedFiles.set(0);
+        unchangedFiles.set(0);
+        changedFiles.set(0);
+        try {
+            uploadStager.cleanup();
+        } catch (IOException e) {
+            log.warn("Failed to remove stale uploads", e);
+        }
+        Map<String, ImageRecord> known = new HashMap<>();
+        List<ImageRecord> tombstones = new ArrayList<>();
+        for (ImageRecord record : repository.load()) {
+            if (record.deleted()) {
+                // Still holds its blob reference until the reclaimer releases it
+                Path path = Paths.get(record.image().getPath());
+                if (blobStore.owns(path)) {
+                    blobStore.retain(path, record.metadata() != null ? record.metadata().getSize() : 0);
+                }
+                // Known, so the scan does not bring a leftover legacy file back
+                known.put(record.id(), record);
+                tombstones.add(record);
+                continue;
+            }
+            if (record.image() != null) {
+                imageStore.put(record.image(), record.metadata());
+                Path path = Paths.get(record.image().getPath());
+                if (blobStore.owns(path)) {
+                    blobStore.retain(path, record.metadata() != null ? record.metadata().getSize() : 0);
+                }
+                known.put(record.id(), record);
+            }
+            if (record.metadata() != null) {
+                metadataStore.put(record.id(), record.metadata());
+            }
+        }
+        try {
+            List<ImageRecord> changed = scanImageDir(known);
+            for (ImageRecord record : changed) {
+                imageStore.put(record.image(), record.metadata());
+                if (record.metadata() != null) {
+                    metadataStore.put(record.id(), record.metadata());
+                }
+            }
+            if (!changed.isEmpty()) {
+                repository.putAll(changed);
+            }
+        } catch (IOException e) {
+            log.error("Failed to scan image directory {}", imageDir, e);
+        }
+        for (ImageRecord record : tombstones) {
+            reclaimer.enqueue(record.id(), Paths.get(record.image().getPath()));
+        }
+        // Blob references are complete only now, so releasing and sweeping them waits until here
+        reclaimer.start(reclaimIntervalMillis, this::sweepOrphans, sweepIntervalMillis);
+        if (migrateLegacy) {
+            List<String> legacy = new ArrayList<>();
+            for (Image image : imageStore.values()) {
+                if (!blobStore.owns(Paths.get(image.getPath())) && !isReplica(metadataStore.get(image.getId()))) {
+                    legacy.add(image.getId());
+                }
+            }
+            migrator.start(legacy, migrationFilesPerSecond);
+        }
+        warmupMillis = System.currentTimeMillis() - warmupStarted;
+        synchronized (readinessLock) {
+            ready = true;
+            publishReadiness(ReadinessState.ACCEPTING_TRAFFIC);
+        }
+        log.info("Index ready: {} images, {} files scanned ({} new or changed) in {} ms",
+                imageStore.size(), scannedFiles.get(), changedFiles.get(), warmupMillis);
+        if (notificationService != null) {
+            // Subscribers that connected while warming only saw part of the list
+            notificationService.publish(ImageEvent.resync());
+        }
+        enrichExisting();
+    }
+
+    /**
+     * Index the legacy {@code <id>_<name>} files in the image directory across all cores.
+     * @param known Records already loaded from the repository, by id
+     * @return Records for files that are new or differ from what is on record
+     */
+    private List<ImageRecord> scanImageDir(Map<String, ImageRecord> known) throws IOException {
+        List<Path> candidates;
+        try (Stream<Path> files = Files.list(Paths.get(imageDir))) {
+            candidates = files.filter(path -> {
+                String filename = path.getFileName().toString();
+                return !filename.startsWith(".") && filename.contains("_");
+            }).toList();
+        }
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return pool.submit(() -> candidates.parallelStream()
+                    .map(path -> scanFile(path, known))
+                    .filter(Objects::nonNull)
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private ImageRecord scanFile(Path path, Map<String, ImageRecord> known) {
+        String[] parts = path.getFileName().toString().split("_", 2);
+        String id = parts[0];
+        String originalName = parts[1];
+        Image image = new Image(id, originalName, path.toString());
         try {
-            Files.list(Paths.get(imageDir))
-                .filter(Files::isRegularFile)
-                .forEach(path -> {
-                    String filename = path.getFileName().toString();
-                    if (filename.contains("_")) {
-                        String[] parts = filename.split("_", 2);
-                        String id = parts[0];
-                        String originalName = parts[1];
-                        System.out.println("[ImageService] Loading image: " + id + " - " + originalName);
-                        Image image = new Image(id, originalName, path.toString());
-                        imageStore.put(id, image);
-
-                        try {
-                            long size = Files.size(path);
-                            String mimeType = Files.probeContentType(path);
-                            ImageMetadata metadata = new ImageMetadata(id, originalName, mimeType, size);
-                            metadataStore.put(id, metadata);
-                        } catch (IOException e) {
-                            // Could log file metadata reading error here
-                        }
-                    }
-                });
-            System.out.println("[ImageService] Reloaded " + imageStore.size() + " images from disk.");
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            scannedFiles.incrementAndGet();
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            ImageRecord record = known.get(id);
+            if (record != null && record.deleted()) {
+                // Deleted; the file is waiting for the reclaimer
+                return null;
+            }
+            if (record != null && record.image() != null && blobStore.owns(Paths.get(record.image().getPath()))) {
+                // Already moved into the blob store; the flat copy outlived its grace period
+                reclaimer.enqueue(null, path);
+                return null;
+            }
+            if (record != null && record.metadata() != null && path.toString().equals(record.image().getPath())
+                    && record.metadata().getSize() == attrs.size()
+                    && record.metadata().getLastModified() == lastModified) {
+                unchangedFiles.incrementAndGet();
+                return null;
+            }
+            changedFiles.incrementAndGet();
+            String mimeType = ImageTypeDetector.detect(path);
+            ImageMetadata metadata = new ImageMetadata(id, originalName, mimeType, attrs.size(), lastModified);
+            return new ImageRecord(id, image, metadata);
         } catch (IOException e) {
-            System.err.println("[ImageService] Failed to reload images from disk: " + e.getMessage());
+            // Unreadable file: list it without metadata
+            return new ImageRecord(id, image, null);
         }
     }
 
+    @Override
+    /**
+     * Report startup warm-up progress.
+     */
+    public IndexStatus getIndexStatus() {
+        long elapsed = ready ? warmupMillis : System.currentTimeMillis() - warmupStarted;
+        return new IndexStatus(ready, imageStore.size(), scannedFiles.get(), unchangedFiles.get(),
+                changedFiles.get(), elapsed);
+    }
+
+    @Override
+    /**
+     * Report progress of the background file reclaimer and orphan sweep.
+     */
+    public ReclaimStatus getReclaimStatus() {
+        return reclaimer.status();
+    }
+
+    @Override
+    /**
+     * Report progress of moving flat legacy files into the blob store.
+     */
+    public MigrationStatus getMigrationStatus() {
+        return migrator.status();
+    }
+
+    @Override
+    /**
+     * Report progress of the background metadata enrichment.
+     */
+    public EnrichmentStatus getEnrichmentStatus() {
+        return enricher.status();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrator.shutdown();
+        reclaimer.shutdown();
+        enricher.shutdown();
+    }
+
+    @Override
+    /**
+     * Get deduplication statistics for stored image bytes.
+     */
+    public BlobStore.Stats getStorageStats() {
+        return blobStore.stats();
+    }
 
     @Override
     /**
@@ -142,9 +785,41 @@ public class ImageServiceImpl implements ImageService {
     @Override
     /**
      * Set or update metadata for a specific image.
+     * MIME type, size, modification time, the content and perceptual hashes and the enriched
+     * fields (dimensions, EXIF, dominant colour) describe the stored file and are kept from the
+     * existing record, since downloads and layout are based on them.
      */
     public ImageMetadata setImageMetadata(String id, ImageMetadata metadata) {
-        metadataStore.put(id, metadata);
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            ImageMetadata existing = metadataStore.get(id);
+            if (existing != null) {
+                metadata.setMimeType(existing.getMimeType());
+                metadata.setSize(existing.getSize());
+                metadata.setLastModified(existing.getLastModified());
+                metadata.setSha256(existing.getSha256());
+                metadata.setPerceptualHash(existing.getPerceptualHash());
+                metadata.setWidth(existing.getWidth());
+                metadata.setHeight(existing.getHeight());
+                metadata.setOrientation(existing.getOrientation());
+                metadata.setExif(existing.getExif());
+                metadata.setDominantColor(existing.getDominantColor());
+                metadata.setOwner(existing.getOwner());
+            }
+            repository.updateMetadata(id, metadata);
+            imageStore.updateMetadata(id, metadata);
+            metadataStore.put(id, metadata);
+        } finally {
+            lock.unlock();
+        }
+        Image image = imageStore.get(id);
+        if (image != null) {
+            for (ImageLifecycleListener listener : listeners) {
+                listener.metadataUpdated(image, metadata);
+            }
+            notificationService.publish(ImageEvent.metadataUpdated(id, metadata));
+        }
         return metadata;
     }
 }
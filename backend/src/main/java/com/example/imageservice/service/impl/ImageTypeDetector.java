@@ -0,0 +1,87 @@
+package com.example.imageservice.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Detects image formats from their leading magic bytes, so the stored MIME type reflects
+ * the actual content rather than the client-supplied Content-Type or the file extension.
+ */
+public final class ImageTypeDetector {
+    /** Number of leading bytes needed to recognise every supported format. */
+    public static final int HEADER_LENGTH = 64;
+    public static final String UNKNOWN = "application/octet-stream";
+
+    private ImageTypeDetector() {}
+
+    /**
+     * Detect the MIME type from the first bytes of a file.
+     * @param header Leading bytes of the file
+     * @param length Number of valid bytes in header
+     * @return The detected image MIME type, or {@link #UNKNOWN}
+     */
+    public static String detect(byte[] header, int length) {
+        if (startsWith(header, length, 0, 0xFF, 0xD8, 0xFF)) return "image/jpeg";
+        if (startsWith(header, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return "image/png";
+        if (startsWith(header, length, 0, 'G', 'I', 'F', '8', '7', 'a')
+                || startsWith(header, length, 0, 'G', 'I', 'F', '8', '9', 'a')) return "image/gif";
+        if (startsWith(header, length, 0, 'R', 'I', 'F', 'F')
+                && startsWith(header, length, 8, 'W', 'E', 'B', 'P')) return "image/webp";
+        if (startsWith(header, length, 4, 'f', 't', 'y', 'p')) return detectIsoBmff(header, length);
+        if (startsWith(header, length, 0, 0xFF, 0x0A)
+                || startsWith(header, length, 0, 0, 0, 0, 0x0C, 'J', 'X', 'L', ' ')) return "image/jxl";
+        if (startsWith(header, length, 0, 'I', 'I', 0x2A, 0)
+                || startsWith(header, length, 0, 'M', 'M', 0, 0x2A)) return "image/tiff";
+        if (startsWith(header, length, 0, 'B', 'M')) return "image/bmp";
+        if (startsWith(header, length, 0, 0, 0, 1, 0)) return "image/x-icon";
+        return UNKNOWN;
+    }
+
+    /**
+     * Detect the MIME type of a file on disk by reading only its header.
+     */
+    public static String detect(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] header = in.readNBytes(HEADER_LENGTH);
+            return detect(header, header.length);
+        }
+    }
+
+    /**
+     * AVIF and HEIF share the ISO base media container; tell them apart by the major and
+     * compatible brands listed in the leading ftyp box.
+     */
+    private static String detectIsoBmff(byte[] header, int length) {
+        int boxSize = ((header[0] & 0xFF) << 24) | ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+        int end = Math.min(length, Math.max(boxSize, 12));
+        boolean heif = false;
+        for (int offset = 8; offset + 4 <= end; offset += 4) {
+            if (offset == 12) {
+                continue; // minor version, not a brand
+            }
+            String brand = new String(header, offset, 4, StandardCharsets.US_ASCII);
+            if (brand.equals("avif") || brand.equals("avis")) {
+                return "image/avif";
+            }
+            if (brand.startsWith("hei") || brand.startsWith("hev") || brand.equals("mif1") || brand.equals("msf1")) {
+                heif = true;
+            }
+        }
+        return heif ? "image/heic" : UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] data, int length, int offset, int... magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((data[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
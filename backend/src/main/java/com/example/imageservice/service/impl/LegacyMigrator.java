@@ -0,0 +1,102 @@
+package com.example.imageservice.service.impl;
+
+import com.example.imageservice.config.ExecutionMode;
+import com.example.imageservice.service.MigrationStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves images out of the flat image directory in the background, one at a time and at a
+ * bounded rate, while the service keeps serving them. Each image is switched to its new file
+ * atomically, so readers see either layout but never neither.
+ */
+class LegacyMigrator {
+    private static final Logger log = LoggerFactory.getLogger(LegacyMigrator.class);
+
+    /** Moves one image; returns false if there was nothing to move. */
+    @FunctionalInterface
+    interface Step {
+        boolean migrate(String id) throws IOException;
+    }
+
+    private final Step step;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ExecutionMode.daemonThreads("legacy-migrator-"));
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicLong remaining = new AtomicLong();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running;
+
+    LegacyMigrator(Step step) {
+        this.step = step;
+    }
+
+    /**
+     * Start moving the given images, at most {@code filesPerSecond} (0 for no limit).
+     * Later calls do nothing.
+     */
+    void start(List<String> ids, int filesPerSecond) {
+        if (ids.isEmpty() || !started.compareAndSet(false, true)) {
+            return;
+        }
+        running = true;
+        log.info("Moving {} images from the flat image directory into the blob store", ids.size());
+        executor.execute(() -> {
+            try {
+                migrate(ids, filesPerSecond);
+            } finally {
+                running = false;
+            }
+            log.info("Image migration finished: {} moved, {} failed", migrated.get(), failed.get());
+        });
+    }
+
+    /**
+     * Move the given images on the calling thread. Package-private so tests can run it synchronously.
+     */
+    void migrate(List<String> ids, int filesPerSecond) {
+        remaining.set(ids.size());
+        long interval = filesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / filesPerSecond : 0;
+        long next = System.nanoTime();
+        for (String id : ids) {
+            if (interval > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                next = Math.max(next, System.nanoTime() - interval) + interval;
+            }
+            try {
+                if (step.migrate(id)) {
+                    migrated.incrementAndGet();
+                }
+            } catch (IOException | RuntimeException e) {
+                // Stays in the flat layout, which is still served; retried on the next startup
+                failed.incrementAndGet();
+                log.warn("Failed to move image {} into the blob store", id, e);
+            }
+            remaining.decrementAndGet();
+        }
+    }
+
+    MigrationStatus status() {
+        return new MigrationStatus(running, remaining.get(), migrated.get(), failed.get());
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.imageservice.service.impl;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Computes a 64-bit difference hash (dHash) of an image's pixels.
+ * <p>
+ * The image is reduced to 9x8 grey pixels and each bit records whether a pixel is brighter than
+ * its right-hand neighbour. Resized, re-encoded or lightly edited copies of a picture get hashes
+ * a few bits apart; unrelated pictures differ in about half of the 64 bits.
+ */
+public final class PerceptualHash {
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+    // Decode at no more than this many pixels across; enough detail for a clean 9x8 reduction
+    private static final int DECODE_WIDTH = 72;
+
+    private PerceptualHash() {}
+
+    /**
+     * @return The hash as 16 lower-case hex digits, or null if ImageIO cannot decode the file
+     */
+    public static String compute(Path path) throws IOException {
+        BufferedImage decoded = decodeThumbnail(path);
+        return decoded == null ? null : format(hash(decoded));
+    }
+
+    /**
+     * Decode the image at a reduced resolution, skipping most source pixels so large photos stay
+     * cheap. The result keeps the aspect ratio, at least {@value #DECODE_WIDTH} pixels on the
+     * shorter side unless the image is smaller.
+     * @return The decoded pixels, or null if ImageIO has no reader for the file
+     */
+    public static BufferedImage decodeThumbnail(Path path) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / DECODE_WIDTH);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public static String format(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    /**
+     * Hash already decoded pixels.
+     */
+    public static long hash(BufferedImage image) {
+        BufferedImage grey = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = grey.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, WIDTH, HEIGHT, null);
+        } finally {
+            g.dispose();
+        }
+        byte[] pixels = ((DataBufferByte) grey.getRaster().getDataBuffer()).getData();
+        long bits = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                int left = pixels[y * WIDTH + x] & 0xFF;
+                int right = pixels[y * WIDTH + x + 1] & 0xFF;
+                bits = (bits << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.imageservice.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed, deduplicating storage for image bytes.
+ * <p>
+ * Each distinct content is stored once as {@code <root>/ab/cd/<sha256>}, where {@code ab} and
+ * {@code cd} are the first two byte pairs of the hash. Blobs are reference counted: every image
+ * id holding a blob is one reference, and the file is deleted when the last reference is
+ * released. Reference counts are not persisted; they are rebuilt from image metadata on
+ * startup through {@link #retain}.
+ * <p>
+ * Commit and release for the same hash run inside {@link ConcurrentHashMap#compute}, so the
+ * file operation and the count change are atomic with respect to each other.
+ */
+public class BlobStore {
+    /**
+     * Dedup statistics. {@code logicalBytes} counts every reference, {@code physicalBytes}
+     * every blob once.
+     */
+    public record Stats(long blobs, long references, long logicalBytes, long physicalBytes, double dedupRatio) {}
+
+    private record Blob(int refs, long size) {}
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final ConcurrentHashMap<String, Blob> blobs = new ConcurrentHashMap<>();
+    private final AtomicLong references = new AtomicLong();
+    private final AtomicLong logicalBytes = new AtomicLong();
+    private final AtomicLong physicalBytes = new AtomicLong();
+
+    public BlobStore(Path root) {
+        this.root = root;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create blob directory " + root, e);
+        }
+    }
+
+    /**
+     * Move a staged upload into the store, or drop it if the same content is already stored.
+     * @return Path of the blob now holding the content
+     */
+    public Path commit(StagedUpload upload, UploadStager stager) throws IOException {
+        Path target = pathFor(upload.sha256());
+        try {
+            blobs.compute(upload.sha256(), (hash, blob) -> {
+                try {
+                    if (blob != null && Files.exists(target)) {
+                        stager.discard(upload);
+                        return added(blob, 1);
+                    }
+                    Files.createDirectories(target.getParent());
+                    stager.commit(upload, target);
+                    if (blob != null) {
+                        // Retained before its file arrived, as for a replica of another node's image
+                        return added(blob, 1);
+                    }
+                    physicalBytes.addAndGet(upload.size());
+                    return added(new Blob(0, upload.size()), 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            stager.discard(upload);
+            throw e.getCause();
+        }
+        return target;
+    }
+
+    /**
+     * Register an existing reference to a blob without touching the file (startup rebuild).
+     */
+    public void retain(Path blob, long size) {
+        blobs.compute(blob.getFileName().toString(), (hash, existing) -> {
+            if (existing == null) {
+                physicalBytes.addAndGet(size);
+                return added(new Blob(0, size), 1);
+            }
+            return added(existing, 1);
+        });
+    }
+
+    /**
+     * Drop one reference to a blob, deleting the file when none remain.
+     * @return true if the blob file was deleted
+     */
+    public boolean release(Path blob) throws IOException {
+        boolean[] deleted = {false};
+        try {
+            blobs.computeIfPresent(blob.getFileName().toString(), (hash, existing) -> {
+                if (existing.refs() > 1) {
+                    return added(existing, -1);
+                }
+                try {
+                    Files.deleteIfExists(blob);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                added(existing, -1);
+                physicalBytes.addAndGet(-existing.size());
+                deleted[0] = true;
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return deleted[0];
+    }
+
+    /**
+     * Delete blob files that no image refers to, such as those left by a crash between storing
+     * a blob and recording its image. Only call this once references have been rebuilt. Files
+     * modified within the grace period are kept, since an upload may be about to refer to them.
+     * @return Number of files deleted
+     */
+    public int deleteUnreferenced(long graceMillis) throws IOException {
+        long cutoff = System.currentTimeMillis() - graceMillis;
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root, 3)) {
+            files = walk.filter(path -> HASH.matcher(path.getFileName().toString()).matches()).toList();
+        }
+        int deleted = 0;
+        for (Path file : files) {
+            boolean[] removed = {false};
+            // Under the hash's lock, so a concurrent commit of the same content either sees the
+            // file gone or has already registered its reference
+            blobs.compute(file.getFileName().toString(), (hash, blob) -> {
+                try {
+                    if (blob == null && Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                        removed[0] = Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    // Left for the next sweep
+                }
+                return blob;
+            });
+            if (removed[0]) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Whether a path points into this store (as opposed to a legacy per-image file).
+     */
+    public boolean owns(Path path) {
+        return path.toAbsolutePath().normalize().startsWith(root.toAbsolutePath().normalize());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the argument is not a lowercase hex sha-256, which
+     *         could otherwise point outside the store
+     */
+    public Path pathFor(String sha256) {
+        if (!isHash(sha256)) {
+            throw new IllegalArgumentException("Not a sha-256 hash: " + sha256);
+        }
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    public static boolean isHash(String value) {
+        return value != null && HASH.matcher(value).matches();
+    }
+
+    public Stats stats() {
+        long logical = logicalBytes.get();
+        long physical = physicalBytes.get();
+        return new Stats(blobs.size(), references.get(), logical, physical,
+                physical == 0 ? 1.0 : (double) logical / physical);
+    }
+
+    private Blob added(Blob blob, int delta) {
+        references.addAndGet(delta);
+        logicalBytes.addAndGet(delta * blob.size());
+        return new Blob(blob.refs() + delta, blob.size());
+    }
+}
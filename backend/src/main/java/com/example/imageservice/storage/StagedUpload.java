@@ -0,0 +1,13 @@
+package com.example.imageservice.storage;
+
+import java.nio.file.Path;
+
+/**
+ * An upload that has been fully written to a temporary file but not yet moved into place.
+ * @param tempFile Temporary file holding the bytes
+ * @param size Number of bytes written
+ * @param sha256 Lower-case hex SHA-256 of the content
+ * @param mimeType Type detected from the leading bytes
+ */
+public record StagedUpload(Path tempFile, long size, String sha256, String mimeType) {
+}
@@ -0,0 +1,128 @@
+package com.example.imageservice.storage;
+
+import com.example.imageservice.service.impl.ImageTypeDetector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Streams uploads to disk through a fixed-size buffer, hashing and sniffing them on the way.
+ * <p>
+ * Bytes go to a hidden {@code .upload-*.tmp} file next to their final location, are forced
+ * to disk and only then renamed atomically into place, so a failed or interrupted upload never
+ * leaves a partial file under a name the startup scan would pick up.
+ */
+public class UploadStager {
+    static final String TEMP_PREFIX = ".upload-";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path dir;
+    private final int bufferSize;
+
+    /**
+     * @param dir Directory for temporary files; must be on the same file system as the targets
+     * @param bufferSize Copy buffer size in bytes, the only per-upload memory
+     */
+    public UploadStager(Path dir, int bufferSize) {
+        this.dir = dir;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Copy a stream into a new temporary file.
+     * The temporary file is removed if anything goes wrong.
+     */
+    public StagedUpload stage(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = dir.resolve(TEMP_PREFIX + UUID.randomUUID() + TEMP_SUFFIX);
+        boolean done = false;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[bufferSize];
+            byte[] header = new byte[ImageTypeDetector.HEADER_LENGTH];
+            int headerLength = 0;
+            long size = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (headerLength < header.length) {
+                    int n = Math.min(read, header.length - headerLength);
+                    System.arraycopy(buffer, 0, header, headerLength, n);
+                    headerLength += n;
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+                size += read;
+            }
+            out.force(true);
+            done = true;
+            return new StagedUpload(temp, size, HexFormat.of().formatHex(digest.digest()),
+                    ImageTypeDetector.detect(header, headerLength));
+        } finally {
+            if (!done) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Atomically move a staged upload to its final path.
+     */
+    public void commit(StagedUpload upload, Path target) throws IOException {
+        try {
+            Files.move(upload.tempFile(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            discard(upload);
+            throw e;
+        }
+    }
+
+    /**
+     * Delete a staged upload that will not be committed.
+     */
+    public void discard(StagedUpload upload) {
+        try {
+            Files.deleteIfExists(upload.tempFile());
+        } catch (IOException e) {
+            // Removed by cleanup() on next start
+        }
+    }
+
+    /**
+     * Delete temporary files left behind by a crash.
+     */
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (isTempFile(path)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    public static boolean isTempFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.imageservice.upload;
+
+import com.example.imageservice.config.ExecutionMode;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.service.ImageService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores the files of a bulk upload concurrently.
+ * <p>
+ * Files are ingested on a fixed-size pool shared by all requests. Before a file is handed to the
+ * pool the request thread reserves its size against a global in-flight byte budget, so a large
+ * batch is admitted as earlier files finish rather than all at once. Each file succeeds or fails
+ * on its own; a failure is reported in its result and does not affect the others.
+ * <p>
+ * If the request thread is interrupted, files not yet started are skipped and reported as
+ * cancelled, while those already being stored are waited for, so every result is accurate.
+ */
+@Service
+public class BulkUploadService {
+    // The byte budget is tracked in KiB so it fits a semaphore's int permits
+    private static final int PERMIT_BYTES = 1024;
+
+    private final ImageService imageService;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore inFlight;
+    private final int maxPermits;
+
+    public BulkUploadService(ImageService imageService,
+                             @Value("${imageservice.upload.parallelism:0}") int parallelism,
+                             @Value("${imageservice.upload.max-in-flight-bytes:268435456}") long maxInFlightBytes) {
+        this.imageService = imageService;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        // Platform threads even in virtual-thread mode: the pool size is what bounds hashing and disk writes
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                ExecutionMode.daemonThreads("bulk-upload-"));
+        this.maxPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxInFlightBytes / PERMIT_BYTES));
+        this.inFlight = new Semaphore(maxPermits, true);
+    }
+
+    /**
+     * Store every file, blocking until all have finished.
+     * @return One result per file, in request order
+     */
+    public List<UploadResult> saveAll(List<MultipartFile> files) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        boolean interrupted = false;
+        List<Future<UploadResult>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            String name = file.getOriginalFilename();
+            if (cancelled.get()) {
+                futures.add(CompletableFuture.completedFuture(UploadResult.cancelled(name)));
+                continue;
+            }
+            if (file.isEmpty()) {
+                futures.add(CompletableFuture.completedFuture(UploadResult.failed(name, "Empty file")));
+                continue;
+            }
+            // A file larger than the whole budget takes all of it and runs alone
+            int permits = (int) Math.min(maxPermits, (file.getSize() + PERMIT_BYTES - 1) / PERMIT_BYTES);
+            try {
+                inFlight.acquire(permits);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                cancelled.set(true);
+                futures.add(CompletableFuture.completedFuture(UploadResult.cancelled(name)));
+                continue;
+            }
+            try {
+                futures.add(executor.submit(() -> {
+                    try {
+                        if (cancelled.get()) {
+                            return UploadResult.cancelled(name);
+                        }
+                        Image image = imageService.saveImage(file);
+                        return UploadResult.stored(name, image);
+                    } catch (Exception e) {
+                        return UploadResult.failed(name, "Failed to save image: " + e.getMessage());
+                    } finally {
+                        inFlight.release(permits);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                inFlight.release(permits);
+                futures.add(CompletableFuture.completedFuture(UploadResult.failed(name, "Server shutting down")));
+            }
+        }
+
+        List<UploadResult> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            while (true) {
+                try {
+                    results.add(futures.get(i).get());
+                    break;
+                } catch (InterruptedException e) {
+                    // Queued files now skip themselves; a file being stored is still waited for
+                    interrupted = true;
+                    cancelled.set(true);
+                } catch (ExecutionException e) {
+                    results.add(UploadResult.failed(files.get(i).getOriginalFilename(), e.getCause().getMessage()));
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
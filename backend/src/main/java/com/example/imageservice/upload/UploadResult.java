@@ -0,0 +1,23 @@
+package com.example.imageservice.upload;
+
+import com.example.imageservice.model.Image;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one file in a bulk upload: the stored image, the reason it was rejected, or that
+ * the upload was cancelled before the file was attempted.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UploadResult(String filename, boolean success, boolean cancelled, Image image, String error) {
+    public static UploadResult stored(String filename, Image image) {
+        return new UploadResult(filename, true, false, image, null);
+    }
+
+    public static UploadResult failed(String filename, String error) {
+        return new UploadResult(filename, false, false, null, error);
+    }
+
+    public static UploadResult cancelled(String filename) {
+        return new UploadResult(filename, false, true, null, "Cancelled before it was stored");
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.imageservice.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotFileCacheTest {
+    @TempDir
+    Path dir;
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    @Test
+    void testLoadServesFromMemoryAfterSecondRequest() throws Exception {
+        Path file = dir.resolve("a.png");
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        HotFileCache cache = new HotFileCache(1 << 20, 1 << 16);
+        // A first request is left to the disk path
+        assertNull(cache.getOrLoad(file, 4));
+        ByteBuffer second = cache.getOrLoad(file, 4);
+        assertTrue(second.isDirect());
+        assertTrue(second.isReadOnly());
+        Files.delete(file);
+        ByteBuffer third = cache.getOrLoad(file, 4);
+        assertSame(second, third);
+        assertEquals(4, third.remaining());
+        assertEquals(3, third.get(2));
+        HotFileCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(4, stats.bytes());
+    }
+
+    @Test
+    void testRejectedLoadDoesNotReadFile() throws Exception {
+        // 10 KiB capacity; main space filled with hot 1 KiB entries
+        HotFileCache cache = new HotFileCache(10_240, 1024);
+        for (int i = 0; i < 9; i++) {
+            for (int hit = 0; hit < 4; hit++) {
+                cache.get("hot" + i);
+            }
+            cache.put("hot" + i, buffer(1024));
+        }
+        // Neither a one-off nor a file requested less often than the victim is read; a read of
+        // the missing file would throw
+        Path missing = dir.resolve("missing.png");
+        assertNull(cache.getOrLoad(missing, 1024));
+        assertNull(cache.getOrLoad(missing, 1024));
+        assertTrue(cache.stats().rejections() >= 2);
+        assertThrows(NoSuchFileException.class, () -> {
+            for (int i = 0; i < 10; i++) {
+                cache.getOrLoad(missing, 1024);
+            }
+        });
+    }
+
+    @Test
+    void testPreloadSkipsFrequencyCheck() throws Exception {
+        Path file = dir.resolve("next.png");
+        Files.write(file, new byte[]{1, 2, 3});
+        HotFileCache cache = new HotFileCache(1 << 20, 1 << 16);
+        cache.preload(file, 3);
+        assertNotNull(cache.getOrLoad(file, 3));
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void testLargeFilesBypassCache() throws Exception {
+        Path file = dir.resolve("big.png");
+        Files.write(file, new byte[100]);
+        HotFileCache cache = new HotFileCache(1 << 20, 50);
+        assertNull(cache.getOrLoad(file, 100));
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void testFrequentEntriesSurviveScan() {
+        // 10 KiB capacity, 100 B window; 1 KiB entries
+        HotFileCache cache = new HotFileCache(10_240, 1024);
+        for (int i = 0; i < 8; i++) {
+            cache.put("hot" + i, buffer(1024));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 8; i++) {
+                assertNotNull(cache.get("hot" + i));
+            }
+        }
+        // A scan of one-off keys must not displace the hot set
+        for (int i = 0; i < 100; i++) {
+            cache.get("cold" + i);
+            cache.put("cold" + i, buffer(1024));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertNotNull(cache.get("hot" + i), "hot" + i + " evicted");
+        }
+        HotFileCache.Stats stats = cache.stats();
+        assertTrue(stats.rejections() > 0);
+        assertTrue(stats.bytes() <= 10_240);
+    }
+
+    @Test
+    void testInvalidate() {
+        HotFileCache cache = new HotFileCache(10_240, 1024);
+        cache.put("a", buffer(512));
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.stats().bytes());
+    }
+}
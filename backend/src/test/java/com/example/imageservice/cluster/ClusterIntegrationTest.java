@@ -0,0 +1,143 @@
+package com.example.imageservice.cluster;
+
+import com.example.imageservice.ImageserviceApplication;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.service.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two full instances on localhost, each with its own blob directory, as in a real deployment.
+ */
+class ClusterIntegrationTest {
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private Path dir;
+    private int portA;
+    private int portB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Under target rather than the system temp dir: staged uploads are moved into it atomically
+        Files.createDirectories(Paths.get("target"));
+        dir = Files.createTempDirectory(Paths.get("target"), "cluster-test");
+        portA = freePort();
+        portB = freePort();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private ImageService start(String name, int port) {
+        String peers = "http://localhost:" + portA + ",http://localhost:" + portB;
+        ConfigurableApplicationContext node = new SpringApplication(ImageserviceApplication.class).run(
+                "--server.port=" + port,
+                "--imageservice.cluster.node-url=http://localhost:" + port,
+                "--imageservice.cluster.peers=" + peers,
+                "--imageservice.cluster.secret=test-secret",
+                "--imageservice.cluster.retry-millis=50",
+                "--imageservice.metadata.store=memory",
+                "--imageservice.storage.migrate-legacy=false",
+                "--imageservice.storage.blob-dir=" + dir.resolve(name).resolve("blobs"),
+                "--imageservice.rendition.dir=" + dir.resolve(name).resolve("renditions"),
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+        nodes.add(node);
+        return node.getBean(ImageService.class);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    private static Image upload(ImageService node, byte[] bytes) {
+        return node.saveImage(new MockMultipartFile("file", "shared.bin", "application/octet-stream", bytes));
+    }
+
+    @Test
+    void testChangesEventsAndFilesReachOtherNode() throws Exception {
+        ImageService a = start("a", portA);
+        ImageService b = start("b", portB);
+        await(() -> a.getIndexStatus().ready() && b.getIndexStatus().ready());
+
+        // A browser subscribed to B
+        HttpClient http = HttpClient.newHttpClient();
+        CompletableFuture<HttpResponse<Stream<String>>> stream = http.sendAsync(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + portB + "/api/images/stream")).build(),
+                HttpResponse.BodyHandlers.ofLines());
+        Thread.sleep(200);
+
+        byte[] bytes = ("cluster " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        String id = upload(a, bytes).getId();
+        await(() -> b.getImage(id) != null);
+        assertEquals("http://localhost:" + portA, b.getImageMetadata(id).getOwner());
+        assertNull(a.getImageMetadata(id).getOwner());
+        CompletableFuture<Boolean> created = stream.thenApply(response -> {
+            try (Stream<String> lines = response.body()) {
+                return lines.anyMatch(line -> line.contains(id) && line.contains("\"created\""));
+            }
+        });
+        assertTrue(created.get(10, TimeUnit.SECONDS));
+
+        // B copies the file from A on first use and serves it from its own blob store after that
+        Image local = b.fetchImage(id);
+        assertTrue(Paths.get(local.getPath()).startsWith(dir.resolve("b")));
+        assertArrayEquals(bytes, Files.readAllBytes(Paths.get(local.getPath())));
+
+        // Edits and deletes made on B reach A
+        b.setImageMetadata(id, new ImageMetadata(id, "renamed.bin", null, 0));
+        await(() -> "renamed.bin".equals(a.getImageMetadata(id).getName()));
+        assertNull(a.getImageMetadata(id).getOwner());
+        b.deleteImage(id);
+        await(() -> a.getImage(id) == null);
+    }
+
+    @Test
+    void testNodeStartedLaterCatchesUp() throws Exception {
+        ImageService a = start("a", portA);
+        await(() -> a.getIndexStatus().ready());
+        String id = upload(a, ("early " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8)).getId();
+
+        // B was down for the upload; A sends its snapshot once B answers
+        ImageService b = start("b", portB);
+        await(() -> b.getImage(id) != null);
+        assertEquals("http://localhost:" + portA, b.getImageMetadata(id).getOwner());
+    }
+}
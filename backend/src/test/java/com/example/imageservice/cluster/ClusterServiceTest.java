@@ -0,0 +1,113 @@
+package com.example.imageservice.cluster;
+
+import com.example.imageservice.index.ImageQuery;
+import com.example.imageservice.index.SimilarImage;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.persistence.ImageRecord;
+import com.example.imageservice.service.EnrichmentStatus;
+import com.example.imageservice.service.ImageService;
+import com.example.imageservice.service.IndexStatus;
+import com.example.imageservice.service.MigrationStatus;
+import com.example.imageservice.service.ReclaimStatus;
+import com.example.imageservice.storage.BlobStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterServiceTest {
+    // Nothing listens there; the peer link just keeps retrying in the background
+    private static final String PEER = "http://localhost:1";
+    private static final String SHA = "ab".repeat(32);
+
+    /** Records the replicas the cluster service puts. */
+    private static class ReplicaImageService implements ImageService {
+        final Map<String, ImageMetadata> replicas = new LinkedHashMap<>();
+
+        @Override public void putReplica(Image image, ImageMetadata metadata) { replicas.put(image.getId(), metadata); }
+        @Override public Image saveImage(MultipartFile file) { return null; }
+        @Override public List<Image> getAllImages() { return List.of(); }
+        @Override public Iterator<Image> findImages(ImageQuery query, String after) { return null; }
+        @Override public Image getImage(String id) { return null; }
+        @Override public Image fetchImage(String id) { return null; }
+        @Override public List<SimilarImage> findSimilar(String id, int maxDistance, int limit) { return null; }
+        @Override public void deleteImage(String id) {}
+        @Override public ImageMetadata getImageMetadata(String id) { return null; }
+        @Override public ImageMetadata setImageMetadata(String id, ImageMetadata metadata) { return metadata; }
+        @Override public BlobStore.Stats getStorageStats() { return null; }
+        @Override public IndexStatus getIndexStatus() { return null; }
+        @Override public ReclaimStatus getReclaimStatus() { return null; }
+        @Override public MigrationStatus getMigrationStatus() { return null; }
+        @Override public EnrichmentStatus getEnrichmentStatus() { return null; }
+    }
+
+    private ClusterService cluster;
+    private final ReplicaImageService imageService = new ReplicaImageService();
+
+    @BeforeEach
+    void setUp() {
+        cluster = new ClusterService();
+        cluster.imageService = imageService;
+        cluster.nodeUrl = "http://localhost:2";
+        cluster.peerUrls = List.of(PEER, "http://localhost:2");
+        cluster.secret = "s3cret";
+    }
+
+    @AfterEach
+    void tearDown() {
+        cluster.shutdown();
+    }
+
+    private static ImageRecord record(String id, String sha256, String owner) {
+        ImageMetadata metadata = new ImageMetadata(id, "a.png", "image/png", 10);
+        metadata.setSha256(sha256);
+        metadata.setOwner(owner);
+        return new ImageRecord(id, new Image(id, "a.png", null), metadata);
+    }
+
+    @Test
+    void testRefusesToStartWithoutSecret() {
+        cluster.secret = "";
+        assertThrows(IllegalStateException.class, cluster::start);
+    }
+
+    @Test
+    void testAuthorization() {
+        cluster.start();
+        assertTrue(cluster.isAuthorized("s3cret"));
+        assertFalse(cluster.isAuthorized("s3cre"));
+        assertFalse(cluster.isAuthorized(null));
+    }
+
+    @Test
+    void testIgnoresRecordsThatWouldEscapeStorage() {
+        cluster.start();
+        String traversal = UUID.randomUUID().toString();
+        String foreignOwner = UUID.randomUUID().toString();
+        String valid = UUID.randomUUID().toString();
+        cluster.apply(List.of(
+                record(traversal, "../../../../etc/passwd", PEER),
+                record(foreignOwner, SHA, "http://attacker.example"),
+                record("../../etc/passwd", SHA, PEER),
+                record(valid, SHA, PEER)));
+        assertEquals(List.of(valid), List.copyOf(imageService.replicas.keySet()));
+        assertEquals(PEER, imageService.replicas.get(valid).getOwner());
+    }
+
+    @Test
+    void testFetchesOnlyFromPeers() {
+        cluster.start();
+        assertThrows(IOException.class, () -> cluster.fetch("http://169.254.169.254", UUID.randomUUID().toString()));
+        assertThrows(IOException.class, () -> cluster.fetch(PEER, "../admin"));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.imageservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.system.JavaVersion;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionModeTest {
+
+    @Test
+    void testVirtualThreadsOnlyWhenRequestedAndSupported() {
+        assertFalse(ExecutionMode.virtualThreads(false));
+        assertEquals(JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE),
+                ExecutionMode.virtualThreads(true));
+    }
+
+    @Test
+    void testBlockingTasksRunOnNamedDaemonThreadsInEitherMode() throws Exception {
+        for (boolean virtual : new boolean[]{false, true}) {
+            ExecutorService executor = ExecutionMode.blockingTasks("test-", virtual);
+            try {
+                Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+                assertTrue(thread.getName().startsWith("test-"), thread.getName());
+                assertTrue(thread.isDaemon());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.imageservice.controller;
+
+import com.example.imageservice.cache.HotFileCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageFileSenderTest {
+    private static final String ETAG = "\"abc-10-1000\"";
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path tempDir;
+    private Path file;
+    private final ImageFileSender sender = new ImageFileSender();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = tempDir.resolve("img.png");
+        Files.write(file, new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9});
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(file, 10, LAST_MODIFIED, "image/png", ETAG, request, response);
+        return response;
+    }
+
+    @Test
+    void testFullBody() throws Exception {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/"));
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, response.getContentAsByteArray());
+        assertEquals(ETAG, response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("image/png", response.getContentType());
+    }
+
+    @Test
+    void testSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=2-4");
+        MockHttpServletResponse response = send(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+        assertArrayEquals(new byte[]{2, 3, 4}, response.getContentAsByteArray());
+    }
+
+    @Test
+    void testUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=20-");
+        MockHttpServletResponse response = send(request);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void testStaleIfRangeServesFullBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=2-4");
+        request.addHeader("If-Range", "\"other\"");
+        MockHttpServletResponse response = send(request);
+        assertEquals(200, response.getStatus());
+        assertEquals(10, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testIfNoneMatchReturnsNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("If-None-Match", ETAG);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertEquals(0, sender.send(file, 10, LAST_MODIFIED, "image/png", ETAG, request, response));
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testIfModifiedSinceReturnsNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("If-Modified-Since", LAST_MODIFIED);
+        MockHttpServletResponse response = send(request);
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void testSendfileHandOff() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.setAttribute(ImageFileSender.SENDFILE_SUPPORT, Boolean.TRUE);
+        request.addHeader("Range", "bytes=5-");
+        MockHttpServletResponse response = send(request);
+        assertEquals(206, response.getStatus());
+        assertEquals(5L, request.getAttribute(ImageFileSender.SENDFILE_START));
+        assertEquals(10L, request.getAttribute(ImageFileSender.SENDFILE_END));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testByteBufferRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=-3");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ByteBuffer body = ByteBuffer.allocateDirect(10);
+        body.put(Files.readAllBytes(file)).flip();
+        assertEquals(3, sender.send(body, LAST_MODIFIED, "image/png", ETAG, request, response));
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 7-9/10", response.getHeader("Content-Range"));
+        assertArrayEquals(new byte[]{7, 8, 9}, response.getContentAsByteArray());
+        assertEquals(0, body.position());
+    }
+
+    @Test
+    void testMemoryOnlyAskedForFullBody() throws Exception {
+        ImageFileSender.MemorySource unused = (path, length) -> fail("read " + path);
+        MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/");
+        conditional.addHeader("If-None-Match", ETAG);
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        sender.send(file, 10, LAST_MODIFIED, "image/png", ETAG, unused, conditional, notModified);
+        assertEquals(304, notModified.getStatus());
+
+        MockHttpServletRequest ranged = new MockHttpServletRequest("GET", "/");
+        ranged.addHeader("Range", "bytes=2-4");
+        MockHttpServletResponse partial = new MockHttpServletResponse();
+        sender.send(file, 10, LAST_MODIFIED, "image/png", ETAG, unused, ranged, partial);
+        assertArrayEquals(new byte[]{2, 3, 4}, partial.getContentAsByteArray());
+
+        // A full body comes from memory when the source has it
+        byte[] inMemory = {9, 8, 7, 6, 5, 4, 3, 2, 1, 0};
+        MockHttpServletResponse full = new MockHttpServletResponse();
+        sender.send(file, 10, LAST_MODIFIED, "image/png", ETAG, (path, length) -> ByteBuffer.wrap(inMemory),
+                new MockHttpServletRequest("GET", "/"), full);
+        assertArrayEquals(inMemory, full.getContentAsByteArray());
+    }
+
+    @Test
+    void testNotModifiedLeavesHotCacheAlone() throws Exception {
+        HotFileCache cache = new HotFileCache(1 << 20, 1 << 16);
+        Path missing = tempDir.resolve("gone.png");
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+            request.addHeader("If-None-Match", ETAG);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            // Would throw NoSuchFileException if anything tried to read the file
+            sender.send(missing, 10, LAST_MODIFIED, "image/png", ETAG, cache::getOrLoad, request, response);
+            assertEquals(304, response.getStatus());
+        }
+        assertEquals(0, cache.stats().misses());
+        assertEquals(0, cache.stats().entries());
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.imageservice.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartWriterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWritesPartsInOrder() throws Exception {
+        Path file = tempDir.resolve("a.png");
+        Files.write(file, new byte[]{1, 2, 3});
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try (MultipartWriter parts = new MultipartWriter(response)) {
+            assertEquals(3, parts.write("a", "image/png", "\"a1\"", file, 3));
+            assertEquals(2, parts.write("b", "image/jpeg", "\"b1\"", ByteBuffer.wrap(new byte[]{4, 5})));
+            parts.error("c", 404, "Image not found");
+        }
+
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/mixed; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String body = response.getContentAsString(StandardCharsets.ISO_8859_1);
+        assertEquals("--" + boundary + "\r\n"
+                + "Content-ID: <a>\r\nContent-Type: image/png\r\nContent-Length: 3\r\nETag: \"a1\"\r\n\r\n"
+                + "\u0001\u0002\u0003\r\n--" + boundary + "\r\n"
+                + "Content-ID: <b>\r\nContent-Type: image/jpeg\r\nContent-Length: 2\r\nETag: \"b1\"\r\n\r\n"
+                + "\u0004\u0005\r\n--" + boundary + "\r\n"
+                + "Content-ID: <c>\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Length: 15\r\n"
+                + "X-Status: 404\r\n\r\nImage not found"
+                + "\r\n--" + boundary + "--\r\n", body);
+    }
+
+    @Test
+    void testMissingFileBecomesErrorPart() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try (MultipartWriter parts = new MultipartWriter(response)) {
+            assertEquals(0, parts.write("gone", "image/png", "\"g\"", tempDir.resolve("gone.png"), 10));
+        }
+        String body = response.getContentAsString(StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-ID: <gone>\r\n"));
+        assertTrue(body.contains("X-Status: 500\r\n"));
+        assertFalse(body.contains("image/png"));
+    }
+}
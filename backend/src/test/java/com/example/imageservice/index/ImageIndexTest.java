@@ -0,0 +1,287 @@
+package com.example.imageservice.index;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageIndexTest {
+
+    private static Image image(String id) {
+        return new Image(id, id + ".png", "images/" + id);
+    }
+
+    @Test
+    void testInsertionOrderIsStable() {
+        ImageIndex index = new ImageIndex();
+        index.put(image("c"));
+        index.put(image("a"));
+        index.put(image("b"));
+        index.put(new Image("a", "replaced.png", "images/a"));
+        index.remove("c");
+        List<Image> values = index.values();
+        assertEquals(List.of("a", "b"), values.stream().map(Image::getId).toList());
+        assertEquals("replaced.png", values.get(0).getName());
+    }
+
+    @Test
+    void testSnapshotReusedUntilMutation() {
+        ImageIndex index = new ImageIndex();
+        index.put(image("a"));
+        List<Image> first = index.values();
+        assertSame(first, index.values());
+        index.put(image("b"));
+        List<Image> second = index.values();
+        assertNotSame(first, second);
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertThrows(UnsupportedOperationException.class, () -> second.add(image("c")));
+    }
+
+    private static void put(ImageIndex index, String id, String name, String mimeType, long size) {
+        index.put(new Image(id, name, "images/" + id), new ImageMetadata(id, name, mimeType, size));
+    }
+
+    private static List<String> ids(Iterator<Image> it) {
+        List<String> ids = new ArrayList<>();
+        it.forEachRemaining(img -> ids.add(img.getId()));
+        return ids;
+    }
+
+    @Test
+    void testFindFiltersInInsertionOrder() {
+        ImageIndex index = new ImageIndex();
+        put(index, "1", "Cat.png", "image/png", 100);
+        put(index, "2", "dog.jpg", "image/jpeg", 200);
+        put(index, "3", "cat2.jpg", "image/jpeg", 300);
+        put(index, "4", "catalog.png", "image/png", 400);
+        assertEquals(List.of("1", "3", "4"), ids(index.find(new ImageQuery("cat", null, null, null), null)));
+        assertEquals(List.of("2", "3"), ids(index.find(new ImageQuery(null, "image/jpeg", null, null), null)));
+        assertEquals(List.of("2", "3"), ids(index.find(new ImageQuery(null, null, 150L, 300L), null)));
+        assertEquals(List.of("3"), ids(index.find(new ImageQuery("cat", "image/jpeg", 150L, null), null)));
+        assertEquals(List.of(), ids(index.find(new ImageQuery(null, "image/gif", null, null), null)));
+    }
+
+    @Test
+    void testFindPagesAfterCursor() {
+        ImageIndex index = new ImageIndex();
+        for (int i = 1; i <= 5; i++) {
+            put(index, "id" + i, "img" + i + ".png", "image/png", i);
+        }
+        index.remove("id3");
+        assertEquals(List.of("id4", "id5"), ids(index.find(new ImageQuery(), "id2")));
+        assertEquals(List.of("id5"), ids(index.find(new ImageQuery(null, "image/png", null, null), "id4")));
+        assertThrows(IllegalArgumentException.class, () -> index.find(new ImageQuery(), "id3"));
+    }
+
+    @Test
+    void testPagesAcrossBucketsFollowInsertionOrder() {
+        ImageIndex index = new ImageIndex();
+        List<String> expectedBySize = new ArrayList<>();
+        List<String> expectedByName = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String name = "n" + (i % 13) + ".png";
+            long size = i % 7;
+            put(index, "id" + i, name, "image/png", size);
+            if (size >= 2 && size <= 4) {
+                expectedBySize.add("id" + i);
+            }
+            if (name.startsWith("n1")) {
+                expectedByName.add("id" + i);
+            }
+        }
+        assertEquals(expectedBySize, pageThrough(index, new ImageQuery(null, null, 2L, 4L), 9));
+        assertEquals(expectedByName, pageThrough(index, new ImageQuery("N1", null, null, null), 9));
+    }
+
+    private static List<String> pageThrough(ImageIndex index, ImageQuery query, int pageSize) {
+        List<String> all = new ArrayList<>();
+        String cursor = null;
+        while (true) {
+            Iterator<Image> page = index.find(query, cursor);
+            int read = 0;
+            while (read < pageSize && page.hasNext()) {
+                cursor = page.next().getId();
+                all.add(cursor);
+                read++;
+            }
+            if (read < pageSize) {
+                return all;
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentReindexKeepsSecondaryIndexesExact() throws Exception {
+        ImageIndex index = new ImageIndex();
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    String id = thread + "-" + i;
+                    // Few distinct names and sizes, so writers keep meeting in the same buckets
+                    put(index, id, "n" + (i % 5) + ".png", "image/png", i % 3);
+                    if (i % 3 == 0) {
+                        index.updateMetadata(id, new ImageMetadata(id, "m" + (i % 4) + ".png", "image/jpeg", 10 + i % 2));
+                    }
+                    if (i % 2 == 1) {
+                        index.remove(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        for (ImageQuery query : List.of(new ImageQuery("n", null, null, null), new ImageQuery("m2", null, null, null),
+                new ImageQuery(null, "image/jpeg", null, null), new ImageQuery(null, null, 1L, 10L))) {
+            List<String> expected = new ArrayList<>();
+            for (Image img : index.values()) {
+                int i = Integer.parseInt(img.getId().split("-")[1]);
+                ImageMetadata metadata = i % 3 == 0
+                        ? new ImageMetadata(img.getId(), "m" + (i % 4) + ".png", "image/jpeg", 10 + i % 2)
+                        : new ImageMetadata(img.getId(), "n" + (i % 5) + ".png", "image/png", i % 3);
+                if (query.matches(metadata)) {
+                    expected.add(img.getId());
+                }
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, ids(index.find(query, null)));
+        }
+    }
+
+    @Test
+    void testMetadataUpdateReindexesName() {
+        ImageIndex index = new ImageIndex();
+        put(index, "1", "old.png", "image/png", 10);
+        index.updateMetadata("1", new ImageMetadata("1", "new.png", "image/png", 10));
+        assertEquals(List.of(), ids(index.find(new ImageQuery("old", null, null, null), null)));
+        assertEquals(List.of("1"), ids(index.find(new ImageQuery("new", null, null, null), null)));
+    }
+
+    /**
+     * Each thread inserts its own ids, removes every other one and lists the index as it goes.
+     * Afterwards exactly the surviving ids must be present, in insertion order per thread.
+     */
+    private static void putHashed(ImageIndex index, String id, long hash) {
+        ImageMetadata metadata = new ImageMetadata(id, id + ".png", "image/png", 1);
+        metadata.setPerceptualHash(String.format("%016x", hash));
+        index.put(image(id), metadata);
+    }
+
+    @Test
+    void testSimilarMatchesLinearScan() {
+        ImageIndex index = new ImageIndex();
+        Random random = new Random(42);
+        long[] hashes = new long[2000];
+        for (int i = 0; i < hashes.length; i++) {
+            // Clusters of near-duplicates: a few bits flipped from a shared base
+            hashes[i] = i % 10 == 0 ? random.nextLong() : hashes[i - i % 10] ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64));
+            putHashed(index, "img" + i, hashes[i]);
+        }
+        for (int q = 0; q < hashes.length; q += 97) {
+            for (int maxDistance : new int[]{0, 3, 12, 24}) {
+                Set<String> expected = new HashSet<>();
+                for (int i = 0; i < hashes.length; i++) {
+                    if (i != q && Long.bitCount(hashes[i] ^ hashes[q]) <= maxDistance) {
+                        expected.add("img" + i);
+                    }
+                }
+                List<SimilarImage> found = index.similar("img" + q, maxDistance, Integer.MAX_VALUE);
+                assertEquals(expected, found.stream().map(s -> s.image().getId()).collect(Collectors.toSet()));
+                for (int i = 1; i < found.size(); i++) {
+                    assertTrue(found.get(i - 1).distance() <= found.get(i).distance());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSimilarFollowsRemovalAndUpdates() {
+        ImageIndex index = new ImageIndex();
+        putHashed(index, "a", 0b1111);
+        putHashed(index, "b", 0b1110);
+        putHashed(index, "c", 0b1110);
+        assertEquals(List.of("b", "c"), index.similar("a", 1, 10).stream().map(s -> s.image().getId()).toList());
+        index.remove("b");
+        ImageMetadata moved = new ImageMetadata("c", "c.png", "image/png", 1);
+        moved.setPerceptualHash(String.format("%016x", -1L));
+        index.updateMetadata("c", moved);
+        assertTrue(index.similar("a", 1, 10).isEmpty());
+        assertEquals(1, index.similar("c", 60, 1).size());
+        assertNull(index.similar("missing", 1, 10));
+        index.put(image("plain"));
+        assertTrue(index.similar("plain", 64, 10).isEmpty());
+    }
+
+    @Test
+    void testConcurrentStressHasNoLostUpdates() throws Exception {
+        int opsPerThread = 10_000;
+        for (int threads : new int[]{1, 8, 32}) {
+            ImageIndex index = new ImageIndex();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        String id = thread + "-" + i;
+                        index.put(image(id));
+                        if (i % 2 == 1) {
+                            assertNotNull(index.remove(id));
+                        }
+                        if (i % 1000 == 0) {
+                            index.values();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+            List<Image> values = index.values();
+            assertEquals(threads * opsPerThread / 2, values.size());
+            assertEquals(values.size(), index.size());
+            Set<String> seen = new HashSet<>();
+            int[] lastPerThread = new int[threads];
+            Arrays.fill(lastPerThread, -1);
+            for (Image img : values) {
+                assertTrue(seen.add(img.getId()), "duplicate " + img.getId());
+                String[] parts = img.getId().split("-");
+                int thread = Integer.parseInt(parts[0]);
+                int i = Integer.parseInt(parts[1]);
+                assertEquals(0, i % 2);
+                assertTrue(i > lastPerThread[thread], "out of order " + img.getId());
+                lastPerThread[thread] = i;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.imageservice.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimiterTest {
+    private static final long MILLI = 1_000_000;
+
+    /** Fill the limiter to its limit, then finish every request with the same latency. */
+    private static void round(AdaptiveLimiter limiter, long latencyNanos) {
+        int admitted = 0;
+        while (limiter.tryAcquire()) {
+            admitted++;
+        }
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+
+    @Test
+    void testRejectsOverLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 4, 4, 4, 0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.stats().rejected());
+        assertEquals(4, limiter.stats().inFlight());
+        limiter.release(MILLI);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void testGrowsWhileLatencyHoldsAndShrinksWhenItRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 8, 4, 64, 0);
+        for (int i = 0; i < 100; i++) {
+            round(limiter, MILLI);
+        }
+        assertEquals(64, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            round(limiter, 10 * MILLI);
+        }
+        assertTrue(limiter.getLimit() < 32, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void testIgnoresLatencyWellBelowLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 32, 4, 64, 0);
+        // One request at a time cannot say whether 32 is too many
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(i < 500 ? MILLI : 50 * MILLI);
+        }
+        assertEquals(32, limiter.getLimit());
+    }
+
+    @Test
+    void testFailuresAreNotSampled() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 8, 4, 64, 0);
+        for (int i = 0; i < 100; i++) {
+            int admitted = 0;
+            while (limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int j = 0; j < admitted; j++) {
+                limiter.release(-1);
+            }
+        }
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.stats().inFlight());
+    }
+}
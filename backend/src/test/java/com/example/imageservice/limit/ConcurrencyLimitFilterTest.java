@@ -0,0 +1,88 @@
+package com.example.imageservice.limit;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+    private ConcurrencyLimitFilter filter;
+    private final AtomicInteger handled = new AtomicInteger();
+    private final FilterChain chain = (request, response) -> handled.incrementAndGet();
+
+    @BeforeEach
+    void setUp() {
+        filter = new ConcurrencyLimitFilter();
+        filter.uploadMax = 4;
+        filter.retryAfterSeconds = 2;
+        filter.start();
+    }
+
+    private MockHttpServletResponse perform(String method, String path) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, path), response, chain);
+        return response;
+    }
+
+    private AdaptiveLimiter limiter(String name) {
+        return filter.getLimiters().stream().filter(l -> l.getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void testClassifiesEndpoints() {
+        assertEquals(ConcurrencyLimitFilter.EndpointClass.UPLOAD,
+                ConcurrencyLimitFilter.classify(new MockHttpServletRequest("POST", "/api/images")));
+        assertEquals(ConcurrencyLimitFilter.EndpointClass.UPLOAD,
+                ConcurrencyLimitFilter.classify(new MockHttpServletRequest("POST", "/api/images/batch")));
+        assertEquals(ConcurrencyLimitFilter.EndpointClass.DOWNLOAD,
+                ConcurrencyLimitFilter.classify(new MockHttpServletRequest("GET", "/api/images/abc/file")));
+        assertEquals(ConcurrencyLimitFilter.EndpointClass.DOWNLOAD,
+                ConcurrencyLimitFilter.classify(new MockHttpServletRequest("GET", "/api/images/files")));
+        assertEquals(ConcurrencyLimitFilter.EndpointClass.METADATA,
+                ConcurrencyLimitFilter.classify(new MockHttpServletRequest("POST", "/api/images/abc/metadata")));
+        assertEquals(ConcurrencyLimitFilter.EndpointClass.METADATA,
+                ConcurrencyLimitFilter.classify(new MockHttpServletRequest("GET", "/api/images")));
+        assertNull(ConcurrencyLimitFilter.classify(new MockHttpServletRequest("GET", "/api/images/stream")));
+        assertNull(ConcurrencyLimitFilter.classify(new MockHttpServletRequest("GET", "/api/admin/limits")));
+        assertNull(ConcurrencyLimitFilter.classify(new MockHttpServletRequest("OPTIONS", "/api/images")));
+    }
+
+    @Test
+    void testRejectsOverLimitWithRetryAfter() throws Exception {
+        AdaptiveLimiter uploads = limiter("upload");
+        for (int i = 0; i < uploads.getLimit(); i++) {
+            assertTrue(uploads.tryAcquire());
+        }
+
+        MockHttpServletResponse rejected = perform("POST", "/api/images");
+        assertEquals(503, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertEquals(0, handled.get());
+        assertEquals(1, uploads.stats().rejected());
+
+        // Other classes are not held up by busy uploads
+        assertEquals(200, perform("GET", "/api/images/abc/metadata").getStatus());
+        assertEquals(200, perform("GET", "/api/images/abc/file").getStatus());
+        assertEquals(2, handled.get());
+
+        uploads.release(1_000_000);
+        assertEquals(200, perform("POST", "/api/images").getStatus());
+        assertEquals(3, handled.get());
+    }
+
+    @Test
+    void testDisabled() throws Exception {
+        filter.enabled = false;
+        AdaptiveLimiter uploads = limiter("upload");
+        while (uploads.tryAcquire()) {
+            // Uploads in progress
+        }
+        assertEquals(200, perform("POST", "/api/images").getStatus());
+        assertEquals(1, handled.get());
+    }
+}
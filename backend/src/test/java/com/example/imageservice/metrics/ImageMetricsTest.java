@@ -0,0 +1,52 @@
+package com.example.imageservice.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ImageMetrics metrics = new ImageMetrics(registry);
+
+    private long count(String operation, String outcome) {
+        Timer timer = registry.find("image.operation").tag("operation", operation).tag("outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    void testOutcomeTakenFromResponseStatus() {
+        metrics.time(ImageMetrics.GET, () -> ResponseEntity.ok("x"));
+        metrics.time(ImageMetrics.GET, () -> ResponseEntity.status(404).body("Image not found"));
+        metrics.time(ImageMetrics.GET, () -> ResponseEntity.internalServerError().build());
+        // Handlers that stream the body return null
+        metrics.time(ImageMetrics.DOWNLOAD, () -> null);
+
+        assertEquals(1, count(ImageMetrics.GET, "success"));
+        assertEquals(1, count(ImageMetrics.GET, "client_error"));
+        assertEquals(1, count(ImageMetrics.GET, "server_error"));
+        assertEquals(1, count(ImageMetrics.DOWNLOAD, "success"));
+    }
+
+    @Test
+    void testExceptionRecordedAsServerError() {
+        assertThrows(IOException.class, () -> metrics.time(ImageMetrics.LIST, () -> {
+            throw new IOException("broken pipe");
+        }));
+        assertEquals(1, count(ImageMetrics.LIST, "server_error"));
+    }
+
+    @Test
+    void testByteCounters() {
+        metrics.recordIngest(100);
+        metrics.recordIngest(50);
+        metrics.recordEgress(0);
+        metrics.recordEgress(7);
+        assertEquals(150, registry.get("image.ingest.bytes").counter().count());
+        assertEquals(7, registry.get("image.egress.bytes").counter().count());
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.imageservice.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class PrometheusEndpointTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testScrapeExposesImageMeters() throws Exception {
+        mockMvc.perform(get("/api/images")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/images/missing")).andExpect(status().isNotFound());
+
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("image_operation_seconds_bucket{application=\"imageservice\",operation=\"list\",outcome=\"success\""), body);
+        assertTrue(body.contains("operation=\"get\",outcome=\"client_error\""), body);
+        assertTrue(body.contains("image_ingest_bytes_total"), body);
+        assertTrue(body.contains("image_store_images"), body);
+        assertTrue(body.contains("image_sse_subscribers"), body);
+        assertTrue(body.contains("image_cache_gets_total{application=\"imageservice\",result=\"hit\"}"), body);
+        assertTrue(body.contains("disk_free_bytes"), body);
+    }
+}
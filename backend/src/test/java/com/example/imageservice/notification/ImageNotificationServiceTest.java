@@ -0,0 +1,230 @@
+package com.example.imageservice.notification;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageNotificationServiceTest {
+    private ImageNotificationService service;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Emitter that records sent messages and can block or fail on demand. */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<JsonNode> events = new CopyOnWriteArrayList<>();
+        final List<Set<DataWithMediaType>> messages = new CopyOnWriteArrayList<>();
+        final AtomicInteger comments = new AtomicInteger();
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean blocking;
+        volatile boolean broken;
+
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            sending.countDown();
+            if (blocking) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            boolean isMessage = false;
+            for (DataWithMediaType part : items) {
+                String data = part.getData().toString();
+                if (data.startsWith("[")) {
+                    MAPPER.readTree(data).forEach(events::add);
+                    isMessage = true;
+                }
+            }
+            if (isMessage) {
+                messages.add(items);
+            } else {
+                comments.incrementAndGet();
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static void await(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static ImageEvent created(String id) {
+        return ImageEvent.created(new Image(id, id + ".png", "images/" + id), null);
+    }
+
+    private static List<Long> seqs(RecordingEmitter emitter) {
+        return emitter.events.stream().map(e -> e.get("seq").asLong()).toList();
+    }
+
+    private static String type(JsonNode event) {
+        return event.get("type").asText();
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotBlockPublisher() throws Exception {
+        service = new ImageNotificationService(4, 0, 16, 0, 100);
+        RecordingEmitter slow = new RecordingEmitter();
+        slow.blocking = true;
+        RecordingEmitter fast = new RecordingEmitter();
+        service.subscribe(slow, null);
+        service.subscribe(fast, null);
+
+        service.publish(created("a"));
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        for (int i = 2; i <= 10; i++) {
+            service.publish(created("img" + i));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        // The fast subscriber keeps draining while the slow one is stuck
+        await(() -> !fast.events.isEmpty() && fast.events.get(fast.events.size() - 1).get("seq").asLong() == 10);
+
+        // Event 1 is in flight; each overflow of the 4-slot queue collapsed the backlog into a resync
+        ImageNotificationService.Stats stats = service.stats();
+        assertEquals(2, stats.subscribers());
+        assertEquals(10, stats.lastSeq());
+        assertTrue(stats.dropped() >= 8);
+
+        slow.release.countDown();
+        await(() -> slow.events.size() == 2);
+        assertEquals(List.of(1L, 10L), seqs(slow));
+        assertEquals("resync", type(slow.events.get(1)));
+    }
+
+    @Test
+    void testReconnectReplaysMissedEvents() throws Exception {
+        service = new ImageNotificationService(16, 0, 16, 0, 100);
+        for (int i = 1; i <= 5; i++) {
+            service.publish(created("img" + i));
+        }
+        RecordingEmitter resumed = new RecordingEmitter();
+        service.subscribe(resumed, 2L);
+        service.publish(ImageEvent.deleted("img1"));
+        await(() -> resumed.events.size() == 4);
+        assertEquals(List.of(3L, 4L, 5L, 6L), seqs(resumed));
+        // The missed events arrive as one message
+        assertEquals(2, resumed.messages.size());
+        assertEquals("deleted", type(resumed.events.get(3)));
+        assertEquals("img1", resumed.events.get(3).get("id").asText());
+    }
+
+    @Test
+    void testResyncWhenClientFellOffTheRing() throws Exception {
+        service = new ImageNotificationService(16, 0, 4, 0, 100);
+        for (int i = 1; i <= 10; i++) {
+            service.publish(created("img" + i));
+        }
+        // Events 7..10 are still in the ring
+        RecordingEmitter recent = new RecordingEmitter();
+        service.subscribe(recent, 6L);
+        await(() -> recent.events.size() == 4);
+        assertEquals(List.of(7L, 8L, 9L, 10L), seqs(recent));
+
+        RecordingEmitter stale = new RecordingEmitter();
+        service.subscribe(stale, 3L);
+        // An id from before a restart is ahead of the current sequence
+        RecordingEmitter restarted = new RecordingEmitter();
+        service.subscribe(restarted, 99L);
+        await(() -> stale.events.size() == 1 && restarted.events.size() == 1);
+        assertEquals("resync", type(stale.events.get(0)));
+        assertEquals(10, stale.events.get(0).get("seq").asLong());
+        assertEquals("resync", type(restarted.events.get(0)));
+    }
+
+    @Test
+    void testDeadSubscriberIsReaped() throws Exception {
+        service = new ImageNotificationService(4, 0, 16, 0, 100);
+        RecordingEmitter dead = new RecordingEmitter();
+        dead.broken = true;
+        service.subscribe(dead, null);
+        service.publish(created("a"));
+        await(() -> service.stats().subscribers() == 0);
+        assertEquals(1, service.stats().reaped());
+    }
+
+    @Test
+    void testHeartbeatSentToIdleSubscribers() throws Exception {
+        service = new ImageNotificationService(4, 20, 16, 0, 100);
+        RecordingEmitter idle = new RecordingEmitter();
+        service.subscribe(idle, null);
+        await(() -> idle.comments.get() > 0);
+        assertEquals(0, service.stats().delivered());
+    }
+
+    @Test
+    void testBurstIsCoalescedIntoOneMessage() throws Exception {
+        service = new ImageNotificationService(16, 0, 16, 60_000, 100);
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        service.subscribe(first, null);
+        service.subscribe(second, null);
+
+        service.publish(created("a"));
+        service.publish(created("b"));
+        service.publish(ImageEvent.metadataUpdated("a", new ImageMetadata("a", "renamed.png", "image/png", 3)));
+        service.publish(ImageEvent.deleted("b"));
+        service.flush();
+
+        await(() -> first.messages.size() == 1 && second.messages.size() == 1);
+        // One entry per image: the rename folds into the creation, the deletion replaces b's creation
+        assertEquals(2, first.events.size());
+        assertEquals("created", type(first.events.get(0)));
+        assertEquals("renamed.png", first.events.get(0).get("metadata").get("name").asText());
+        assertEquals("deleted", type(first.events.get(1)));
+        // Serialized once: every subscriber is handed the same frame
+        assertSame(first.messages.get(0), second.messages.get(0));
+        assertEquals(1, service.stats().batches());
+    }
+
+    @Test
+    void testBatchSentWhenWindowElapsesOrFull() throws Exception {
+        service = new ImageNotificationService(16, 0, 16, 20, 3);
+        RecordingEmitter emitter = new RecordingEmitter();
+        service.subscribe(emitter, null);
+
+        service.publish(created("a"));
+        await(() -> emitter.messages.size() == 1);
+
+        // Reaching the size limit flushes without waiting for the window
+        ImageNotificationService full = new ImageNotificationService(16, 0, 16, 60_000, 3);
+        try {
+            RecordingEmitter other = new RecordingEmitter();
+            full.subscribe(other, null);
+            for (int i = 0; i < 3; i++) {
+                full.publish(created("img" + i));
+            }
+            await(() -> other.events.size() == 3);
+            assertEquals(1, other.messages.size());
+        } finally {
+            full.shutdown();
+        }
+    }
+}
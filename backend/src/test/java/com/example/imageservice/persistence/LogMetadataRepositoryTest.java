@@ -0,0 +1,286 @@
+package com.example.imageservice.persistence;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogMetadataRepositoryTest {
+    @TempDir
+    Path dir;
+
+    private static void put(MetadataRepository repo, String id) {
+        repo.put(new Image(id, id + ".png", "images/" + id), new ImageMetadata(id, id + ".png", "image/png", 10, 1L));
+    }
+
+    private static List<String> ids(List<ImageRecord> records) {
+        return records.stream().filter(r -> !r.deleted()).map(ImageRecord::id).toList();
+    }
+
+    @Test
+    void testRecoversStateAfterReopen() {
+        LogMetadataRepository repo = new LogMetadataRepository(dir, 1000);
+        put(repo, "a");
+        put(repo, "b");
+        put(repo, "c");
+        repo.updateMetadata("b", new ImageMetadata("b", "renamed.png", "image/png", 10, 1L));
+        repo.delete("a");
+        repo.close();
+
+        LogMetadataRepository reopened = new LogMetadataRepository(dir, 1000);
+        List<ImageRecord> records = reopened.load().stream().filter(r -> !r.deleted()).toList();
+        assertEquals(List.of("b", "c"), ids(records));
+        assertEquals("renamed.png", records.get(0).metadata().getName());
+        assertEquals("b.png", records.get(0).image().getName());
+        reopened.close();
+    }
+
+    @Test
+    void testTombstoneKeepsImageUntilPurged() {
+        LogMetadataRepository repo = new LogMetadataRepository(dir, 4);
+        put(repo, "a");
+        put(repo, "b");
+        repo.delete("a");
+        // Enough writes to fold the tombstone into a snapshot
+        for (int i = 0; i < 10; i++) {
+            put(repo, "x" + i);
+        }
+        repo.close();
+
+        LogMetadataRepository reopened = new LogMetadataRepository(dir, 4);
+        ImageRecord tombstone = reopened.load().get(0);
+        assertEquals("a", tombstone.id());
+        assertTrue(tombstone.deleted());
+        assertEquals("images/a", tombstone.image().getPath());
+        reopened.purge(List.of("a"));
+        reopened.close();
+
+        LogMetadataRepository purged = new LogMetadataRepository(dir, 4);
+        assertEquals(11, purged.load().size());
+        assertFalse(purged.load().stream().anyMatch(ImageRecord::deleted));
+        purged.close();
+    }
+
+    @Test
+    void testCompactionFoldsLogsIntoSnapshot() throws Exception {
+        LogMetadataRepository repo = new LogMetadataRepository(dir, 5);
+        for (int i = 0; i < 23; i++) {
+            put(repo, "id" + i);
+        }
+        repo.delete("id0");
+        repo.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = files.map(p -> p.getFileName().toString()).toList();
+            assertTrue(names.stream().anyMatch(n -> n.startsWith("snapshot-")), names.toString());
+            assertTrue(names.stream().filter(n -> n.startsWith("wal-")).count() <= 2, names.toString());
+        }
+
+        LogMetadataRepository reopened = new LogMetadataRepository(dir, 5);
+        List<String> ids = ids(reopened.load());
+        assertEquals(22, ids.size());
+        assertEquals("id1", ids.get(0));
+        assertEquals("id22", ids.get(21));
+        reopened.close();
+    }
+
+    @Test
+    void testTornTailIsIgnored() throws Exception {
+        LogMetadataRepository repo = new LogMetadataRepository(dir, 1000);
+        put(repo, "a");
+        put(repo, "b");
+        repo.close();
+        Path wal = dir.resolve("wal-1.log");
+        // Simulate a crash halfway through writing a record
+        Files.write(wal, new byte[]{0, 0, 0, 50, 1, 2, 3, 4, '{', '"'}, StandardOpenOption.APPEND);
+
+        LogMetadataRepository reopened = new LogMetadataRepository(dir, 1000);
+        assertEquals(List.of("a", "b"), ids(reopened.load()));
+        put(reopened, "c");
+        reopened.close();
+        LogMetadataRepository again = new LogMetadataRepository(dir, 1000);
+        assertEquals(List.of("a", "b", "c"), ids(again.load()));
+        again.close();
+    }
+
+    @Test
+    void testFailedWriteIsCutOffTheLog() {
+        List<FailingChannel> channels = new ArrayList<>();
+        LogMetadataRepository repo = new LogMetadataRepository(dir, 1000, channel -> {
+            FailingChannel failing = new FailingChannel(channel);
+            channels.add(failing);
+            return failing;
+        });
+        put(repo, "a");
+        channels.get(0).failNextWrite = true;
+        assertThrows(UncheckedIOException.class, () -> put(repo, "b"));
+        // Written after the half frame left by the failure, c would be lost on replay
+        put(repo, "c");
+        repo.close();
+
+        LogMetadataRepository reopened = new LogMetadataRepository(dir, 1000);
+        assertEquals(List.of("a", "c"), ids(reopened.load()));
+        reopened.close();
+    }
+
+    @Test
+    void testInterruptedCallerDoesNotBreakLog() {
+        LogMetadataRepository repo = new LogMetadataRepository(dir, 1000);
+        Thread.currentThread().interrupt();
+        put(repo, "a");
+        // The caller keeps its interrupt, and the log stays open for everyone else
+        assertTrue(Thread.interrupted());
+        put(repo, "b");
+        repo.close();
+
+        LogMetadataRepository reopened = new LogMetadataRepository(dir, 1000);
+        assertEquals(List.of("a", "b"), ids(reopened.load()));
+        reopened.close();
+    }
+
+    @Test
+    void testConcurrentWritersAreAllDurable() throws Exception {
+        LogMetadataRepository repo = new LogMetadataRepository(dir, 50);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    put(repo, thread + "-" + i);
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        repo.close();
+
+        LogMetadataRepository reopened = new LogMetadataRepository(dir, 50);
+        assertEquals(800, reopened.load().size());
+        reopened.close();
+    }
+
+    /** Delegates to a real log channel; writes half of the next buffer and then fails when armed. */
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean failNextWrite;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                ByteBuffer half = src.slice(src.position(), src.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
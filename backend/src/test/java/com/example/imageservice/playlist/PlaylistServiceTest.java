@@ -0,0 +1,150 @@
+package com.example.imageservice.playlist;
+
+import com.example.imageservice.cache.HotFileCache;
+import com.example.imageservice.index.ImageQuery;
+import com.example.imageservice.index.SimilarImage;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.service.EnrichmentStatus;
+import com.example.imageservice.service.ImageService;
+import com.example.imageservice.service.IndexStatus;
+import com.example.imageservice.service.MigrationStatus;
+import com.example.imageservice.service.ReclaimStatus;
+import com.example.imageservice.storage.BlobStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlaylistServiceTest {
+    @TempDir
+    Path dir;
+
+    private final FixedImageService images = new FixedImageService();
+    private PlaylistService playlist;
+
+    /** Serves a fixed set of images, publishing a new list snapshot after each change. */
+    private static class FixedImageService implements ImageService {
+        final Map<String, Image> byId = new LinkedHashMap<>();
+        final Map<String, ImageMetadata> metadata = new LinkedHashMap<>();
+        List<Image> snapshot = List.of();
+
+        void add(Path file, String id) throws Exception {
+            Files.write(file, new byte[]{1, 2, 3});
+            byId.put(id, new Image(id, id + ".png", file.toString()));
+            metadata.put(id, new ImageMetadata(id, id + ".png", "image/png", 3, 0));
+            snapshot = List.copyOf(byId.values());
+        }
+
+        @Override public void deleteImage(String id) {
+            byId.remove(id);
+            metadata.remove(id);
+            snapshot = List.copyOf(byId.values());
+        }
+
+        @Override public List<Image> getAllImages() { return snapshot; }
+        @Override public Image getImage(String id) { return byId.get(id); }
+        @Override public Image fetchImage(String id) { return byId.get(id); }
+        @Override public void putReplica(Image image, ImageMetadata metadata) {}
+        @Override public List<SimilarImage> findSimilar(String id, int maxDistance, int limit) { return null; }
+        @Override public ImageMetadata getImageMetadata(String id) { return metadata.get(id); }
+        @Override public Image saveImage(MultipartFile file) { return null; }
+        @Override public Iterator<Image> findImages(ImageQuery query, String after) { return null; }
+        @Override public ImageMetadata setImageMetadata(String id, ImageMetadata m) { return m; }
+        @Override public BlobStore.Stats getStorageStats() { return null; }
+        @Override public IndexStatus getIndexStatus() { return null; }
+        @Override public ReclaimStatus getReclaimStatus() { return null; }
+        @Override public MigrationStatus getMigrationStatus() { return null; }
+        @Override public EnrichmentStatus getEnrichmentStatus() { return null; }
+    }
+
+    private void addImages(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            images.add(dir.resolve("img" + i + ".png"), "img" + i);
+        }
+    }
+
+    private static List<String> ids(PlaylistWindow window) {
+        return window.images().stream().map(Image::getId).toList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        playlist.shutdown();
+    }
+
+    @Test
+    void testStepsCycleThroughAllImages() throws Exception {
+        addImages(5);
+        playlist = new PlaylistService(images, new HotFileCache(1 << 20, 1 << 16), 1, 2000);
+        PlaylistWindow first = playlist.next(2, null);
+        assertEquals(List.of("img0", "img1"), ids(first));
+        assertEquals(List.of("img2", "img3"), first.prefetch());
+        assertEquals(Set.of("img0", "img1"), first.metadata().keySet());
+        assertEquals(5, first.total());
+        assertEquals(2000, first.intervalMillis());
+
+        PlaylistWindow second = playlist.next(2, first.cursor());
+        assertEquals(List.of("img2", "img3"), ids(second));
+        PlaylistWindow third = playlist.next(2, second.cursor());
+        // Wraps around to the start
+        assertEquals(List.of("img4", "img0"), ids(third));
+        assertEquals(List.of("img1", "img2"), third.prefetch());
+    }
+
+    @Test
+    void testSmallLibraryNeverRepeatsWithinStep() throws Exception {
+        addImages(2);
+        playlist = new PlaylistService(images, new HotFileCache(1 << 20, 1 << 16), 2, 2000);
+        PlaylistWindow window = playlist.next(4, null);
+        assertEquals(List.of("img0", "img1"), ids(window));
+        assertTrue(window.prefetch().isEmpty());
+        assertEquals(List.of("img0", "img1"), ids(playlist.next(4, window.cursor())));
+    }
+
+    @Test
+    void testCursorSurvivesDeletionOfLastShownImage() throws Exception {
+        addImages(5);
+        playlist = new PlaylistService(images, new HotFileCache(1 << 20, 1 << 16), 1, 2000);
+        PlaylistWindow first = playlist.next(2, null);
+        images.deleteImage("img1");
+        // img1 was the last shown; carry on with what followed it
+        assertEquals(List.of("img2", "img3"), ids(playlist.next(2, first.cursor())));
+    }
+
+    @Test
+    void testPrefetchWarmsFileCache() throws Exception {
+        addImages(6);
+        HotFileCache cache = new HotFileCache(1 << 20, 1 << 16);
+        playlist = new PlaylistService(images, cache, 2, 2000);
+        PlaylistWindow window = playlist.next(1, null);
+        assertEquals(List.of("img1", "img2"), window.prefetch());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.stats().entries() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, cache.stats().entries());
+        // The client's download of a prefetched image is now a hit
+        assertNotNull(cache.getOrLoad(dir.resolve("img1.png"), 3));
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void testRejectsBadArguments() throws Exception {
+        addImages(1);
+        playlist = new PlaylistService(images, new HotFileCache(1 << 20, 1 << 16), 1, 2000);
+        assertThrows(IllegalArgumentException.class, () -> playlist.next(0, null));
+        assertThrows(IllegalArgumentException.class, () -> playlist.next(PlaylistService.MAX_FRAMES + 1, null));
+        assertThrows(IllegalArgumentException.class, () -> playlist.next(1, "nonsense"));
+    }
+}
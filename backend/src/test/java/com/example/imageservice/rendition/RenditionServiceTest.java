@@ -0,0 +1,125 @@
+package com.example.imageservice.rendition;
+
+import com.example.imageservice.model.Image;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenditionServiceTest {
+    @TempDir
+    Path dir;
+    private Image image;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BufferedImage src = new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < 400; x++) {
+            for (int y = 0; y < 200; y++) {
+                src.setRGB(x, y, 0xFF000000 | (x << 8) | y);
+            }
+        }
+        Path file = dir.resolve("source.png");
+        ImageIO.write(src, "png", file.toFile());
+        image = new Image("img1", "source.png", file.toString());
+    }
+
+    private RenditionService service(long diskBytes, long memoryBytes) {
+        return new RenditionService(dir.resolve("renditions").toString(), diskBytes, memoryBytes, 4096, 50_000_000);
+    }
+
+    private long renditionFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir.resolve("renditions"))) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testResizesAndEncodes() throws Exception {
+        RenditionService service = service(1 << 20, 1 << 20);
+        Rendition rendition = service.render(image, 100, "jpeg");
+        assertEquals("image/jpeg", rendition.mimeType());
+        BufferedImage out = ImageIO.read(new ByteArrayInputStream(rendition.bytes()));
+        assertEquals(100, out.getWidth());
+        assertEquals(50, out.getHeight());
+
+        Rendition larger = service.render(image, 1000, "png");
+        assertEquals(400, ImageIO.read(new ByteArrayInputStream(larger.bytes())).getWidth());
+    }
+
+    @Test
+    void testCachedInMemoryAndOnDisk() throws Exception {
+        RenditionService service = service(1 << 20, 1 << 20);
+        Rendition first = service.render(image, 80, "png");
+        assertSame(first.bytes(), service.render(image, 80, "png").bytes());
+        assertEquals(1, renditionFiles());
+
+        // A new instance picks the file up from disk
+        RenditionService restarted = service(1 << 20, 1 << 20);
+        Files.delete(Path.of(image.getPath()));
+        assertArrayEquals(first.bytes(), restarted.render(image, 80, "png").bytes());
+    }
+
+    @Test
+    void testInvalidateAndEviction() throws Exception {
+        RenditionService service = service(1 << 20, 1 << 20);
+        service.render(image, 40, "png");
+        service.render(image, 60, "png");
+        assertEquals(2, renditionFiles());
+        service.invalidate("img1");
+        assertEquals(0, renditionFiles());
+
+        RenditionService tiny = service(1, 1);
+        assertNotNull(tiny.render(image, 40, "png"));
+        assertEquals(0, renditionFiles());
+    }
+
+    @Test
+    void testConcurrentRequestsShareResult() throws Exception {
+        RenditionService service = service(1 << 20, 1 << 20);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Rendition>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(() -> service.render(image, 120, "jpeg")));
+        }
+        byte[] expected = futures.get(0).get().bytes();
+        for (Future<Rendition> f : futures) {
+            assertArrayEquals(expected, f.get().bytes());
+        }
+        pool.shutdown();
+        assertEquals(1, renditionFiles());
+    }
+
+    @Test
+    void testSourceLimits() throws Exception {
+        RenditionService narrow = new RenditionService(dir.resolve("renditions").toString(), 1 << 20, 1 << 20, 150, 80_000);
+        // Without w the output is clamped to the maximum width
+        Rendition clamped = narrow.render(image, null, "png");
+        assertEquals(150, ImageIO.read(new ByteArrayInputStream(clamped.bytes())).getWidth());
+
+        RenditionService small = new RenditionService(dir.resolve("renditions").toString(), 1 << 20, 1 << 20, 4096, 79_999);
+        RenditionService.SourceTooLargeException e = assertThrows(RenditionService.SourceTooLargeException.class,
+                () -> small.render(image, 10, "png"));
+        assertTrue(e.getMessage().contains("400x200"));
+    }
+
+    @Test
+    void testUndecodableSourceReturnsNull() throws Exception {
+        Path junk = dir.resolve("junk.bin");
+        Files.write(junk, new byte[]{1, 2, 3});
+        assertNull(service(1 << 20, 1 << 20).render(new Image("junk", "junk.bin", junk.toString()), 10, "png"));
+    }
+}
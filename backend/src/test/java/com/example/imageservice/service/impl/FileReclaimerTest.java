@@ -0,0 +1,58 @@
+package com.example.imageservice.service.impl;
+
+import com.example.imageservice.service.ReclaimStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileReclaimerTest {
+    private final List<List<String>> purged = new ArrayList<>();
+
+    @Test
+    void testPurgesTombstonesPerBatch() {
+        List<Path> deleted = new ArrayList<>();
+        FileReclaimer reclaimer = new FileReclaimer(deleted::add, purged::add, 0);
+        int count = FileReclaimer.BATCH_SIZE + 10;
+        for (int i = 0; i < count; i++) {
+            reclaimer.enqueue("id" + i, Paths.get("images", "file" + i));
+        }
+        assertEquals(count, reclaimer.status().pending());
+        reclaimer.reclaim();
+        assertEquals(count, deleted.size());
+        // One durability barrier per batch, not per file
+        assertEquals(2, purged.size());
+        assertEquals(FileReclaimer.BATCH_SIZE, purged.get(0).size());
+        ReclaimStatus status = reclaimer.status();
+        assertEquals(0, status.pending());
+        assertEquals(count, status.reclaimed());
+    }
+
+    @Test
+    void testFailedFileIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        FileReclaimer reclaimer = new FileReclaimer(path -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException("busy");
+            }
+        }, purged::add, 0);
+        reclaimer.enqueue("a", Paths.get("images", "a"));
+        reclaimer.reclaim();
+        ReclaimStatus failed = reclaimer.status();
+        assertEquals(1, failed.pending());
+        assertEquals(1, failed.retrying());
+        assertEquals(1, failed.failures());
+        // Its tombstone stays until the file is gone
+        assertTrue(purged.isEmpty());
+
+        reclaimer.reclaim();
+        assertEquals(List.of(List.of("a")), purged);
+        assertEquals(0, reclaimer.status().pending());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.imageservice.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageHeaderTest {
+    @TempDir
+    Path dir;
+
+    /** Little-endian TIFF with Make and Orientation in IFD0 and ISO and exposure in the Exif IFD. */
+    private static byte[] exif(int orientation) {
+        ByteBuffer tiff = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put(new byte[]{'I', 'I'}).putShort((short) 42).putInt(8);
+        // IFD0 at 8: three entries, then the next-IFD offset
+        tiff.putShort((short) 3);
+        tiff.putShort((short) 0x010F).putShort((short) 2).putInt(8).putInt(80);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(50);
+        tiff.putInt(0);
+        // Exif IFD at 50: two entries
+        tiff.position(50);
+        tiff.putShort((short) 2);
+        tiff.putShort((short) 0x8827).putShort((short) 3).putInt(1).putShort((short) 400).putShort((short) 0);
+        tiff.putShort((short) 0x829A).putShort((short) 5).putInt(1).putInt(88);
+        tiff.position(80);
+        tiff.put("TestCam\0".getBytes(StandardCharsets.US_ASCII));
+        tiff.putInt(1).putInt(250);
+        return tiff.array();
+    }
+
+    private Path jpegWithExif(int width, int height, int orientation) throws Exception {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", encoded);
+        byte[] jpeg = encoded.toByteArray();
+        byte[] tiff = exif(orientation);
+        ByteBuffer file = ByteBuffer.allocate(jpeg.length + 10 + tiff.length);
+        // SOI, then the APP1 segment, then the rest of the encoded file
+        file.put(jpeg, 0, 2);
+        file.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + 6 + tiff.length));
+        file.put(new byte[]{'E', 'x', 'i', 'f', 0, 0}).put(tiff);
+        file.put(jpeg, 2, jpeg.length - 2);
+        Path path = dir.resolve("photo-" + orientation + ".jpg");
+        Files.write(path, file.array());
+        return path;
+    }
+
+    @Test
+    void testReadsExifAndSwapsRotatedDimensions() throws Exception {
+        ImageHeader rotated = ImageHeader.read(jpegWithExif(40, 30, 6), "image/jpeg");
+        assertEquals(30, rotated.width());
+        assertEquals(40, rotated.height());
+        assertEquals(6, rotated.orientation());
+        assertEquals("TestCam", rotated.exif().get("make"));
+        assertEquals("400", rotated.exif().get("iso"));
+        assertEquals("1/250", rotated.exif().get("exposureTime"));
+
+        ImageHeader upright = ImageHeader.read(jpegWithExif(40, 30, 1), "image/jpeg");
+        assertEquals(40, upright.width());
+        assertEquals(30, upright.height());
+    }
+
+    @Test
+    void testImagesWithoutExif() throws Exception {
+        Path png = dir.resolve("plain.png");
+        ImageIO.write(new BufferedImage(7, 5, BufferedImage.TYPE_INT_ARGB), "png", png.toFile());
+        ImageHeader header = ImageHeader.read(png, "image/png");
+        assertEquals(7, header.width());
+        assertEquals(5, header.height());
+        assertNull(header.orientation());
+        assertNull(header.exif());
+
+        Path garbage = dir.resolve("garbage.bin");
+        Files.write(garbage, new byte[]{1, 2, 3});
+        assertNull(ImageHeader.read(garbage, "application/octet-stream"));
+    }
+}
@@ -38,6 +38,25 @@ class ImageServiceImplFileNotificationTest {
         File diskFile = new File(image.getPath());
         assertTrue(diskFile.exists());
         imageService.deleteImage(image.getId());
+        // Deletion only queues the file; it is removed by the next reclaimer run
+        assertTrue(diskFile.exists());
+        imageService.reclaimer.reclaim();
+        assertFalse(diskFile.exists());
+    }
+
+    @Test
+    void testDuplicateUploadsShareFile() {
+        byte[] data = {70, 80, 90, 100};
+        Image first = imageService.saveImage(new MockMultipartFile("file", "a.jpg", "image/jpeg", data));
+        Image second = imageService.saveImage(new MockMultipartFile("file", "b.jpg", "image/jpeg", data));
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(first.getPath(), second.getPath());
+        File diskFile = new File(first.getPath());
+        imageService.deleteImage(first.getId());
+        imageService.reclaimer.reclaim();
+        assertTrue(diskFile.exists());
+        imageService.deleteImage(second.getId());
+        imageService.reclaimer.reclaim();
         assertFalse(diskFile.exists());
     }
 
@@ -1,12 +1,32 @@
 package com.example.imageservice.service.impl;
 
+import com.example.imageservice.cache.HotFileCache;
 import com.example.imageservice.model.Image;
 import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.notification.ImageNotificationService;
+import com.example.imageservice.persistence.LogMetadataRepository;
+import com.example.imageservice.service.IndexStatus;
+import com.example.imageservice.service.ReclaimStatus;
+import com.example.imageservice.storage.BlobStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.mock.web.MockMultipartFile;
 
-
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,6 +36,8 @@ class ImageServiceImplTest {
     @BeforeEach
     void setUp() {
         imageService = new ImageServiceImpl();
+        // Tests share ./images; keep the background migrator away from other tests' files
+        imageService.migrateLegacy = false;
     }
 
     // This test is now obsolete since saveImage is implemented. Consider updating or removing.
@@ -37,6 +59,60 @@ class ImageServiceImplTest {
         imageService.deleteImage("nonexistent"); // Should not throw
     }
 
+    @Test
+    void testMimeTypeDetectedFromContent() {
+        imageService.notificationService = new ImageNotificationService();
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0};
+        MockMultipartFile file = new MockMultipartFile("file", "spoofed.jpg", "image/jpeg", png);
+        Image image = imageService.saveImage(file);
+        ImageMetadata metadata = imageService.getImageMetadata(image.getId());
+        assertEquals("image/png", metadata.getMimeType());
+        assertEquals(png.length, metadata.getSize());
+        imageService.deleteImage(image.getId());
+    }
+
+    @Test
+    void testSetMetadataKeepsFileAttributes() {
+        imageService.notificationService = new ImageNotificationService();
+        byte[] gif = "GIF89a".getBytes();
+        Image image = imageService.saveImage(new MockMultipartFile("file", "a.gif", "image/gif", gif));
+        ImageMetadata update = new ImageMetadata(image.getId(), "renamed.gif", "text/html", 0);
+        ImageMetadata stored = imageService.setImageMetadata(image.getId(), update);
+        assertEquals("renamed.gif", stored.getName());
+        assertEquals("image/gif", stored.getMimeType());
+        assertEquals(gif.length, stored.getSize());
+        imageService.deleteImage(image.getId());
+    }
+
+    @Test
+    void testEnrichmentFillsMetadataAfterUpload() throws Exception {
+        imageService.notificationService = new ImageNotificationService();
+        BufferedImage picture = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = picture.createGraphics();
+        g.setColor(new Color(0x2060c0));
+        g.fillRect(0, 0, 40, 30);
+        g.dispose();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", png);
+        Image image = imageService.saveImage(new MockMultipartFile("file", "blue.png", "image/png", png.toByteArray()));
+        try {
+            imageService.enricher.enrich(image.getId());
+            ImageMetadata metadata = imageService.getImageMetadata(image.getId());
+            assertEquals(40, metadata.getWidth());
+            assertEquals(30, metadata.getHeight());
+            assertEquals("#2060c0", metadata.getDominantColor());
+            assertNotNull(metadata.getPerceptualHash());
+            // A client edit keeps what was read from the file
+            ImageMetadata renamed = imageService.setImageMetadata(image.getId(),
+                    new ImageMetadata(image.getId(), "renamed.png", "image/png", 0));
+            assertEquals(40, renamed.getWidth());
+            assertEquals("#2060c0", renamed.getDominantColor());
+        } finally {
+            imageService.deleteImage(image.getId());
+            imageService.shutdown();
+        }
+    }
+
     @Test
     void testSetAndGetImageMetadata() {
         ImageMetadata metadata = new ImageMetadata("id","name","mime",123);
@@ -44,4 +120,216 @@ class ImageServiceImplTest {
         ImageMetadata found = imageService.getImageMetadata("id");
         assertEquals(metadata, found);
     }
+
+    @Test
+    void testWarmIndexSkipsUnchangedFiles(@TempDir Path metadataDir) throws Exception {
+        String id = UUID.randomUUID().toString();
+        Path file = Paths.get("images", id + "_legacy.png");
+        Files.write(file, new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A});
+        try {
+            LogMetadataRepository repository = new LogMetadataRepository(metadataDir, 1000);
+            imageService.repository = repository;
+            imageService.warmIndex();
+            IndexStatus first = imageService.getIndexStatus();
+            assertTrue(first.ready());
+            assertTrue(first.changedFiles() >= 1);
+            assertEquals("image/png", imageService.getImageMetadata(id).getMimeType());
+            repository.close();
+
+            // A restart finds every file already on record and does not read it again
+            ImageServiceImpl restarted = new ImageServiceImpl();
+            LogMetadataRepository reopened = new LogMetadataRepository(metadataDir, 1000);
+            restarted.repository = reopened;
+            restarted.migrateLegacy = false;
+            restarted.warmIndex();
+            IndexStatus second = restarted.getIndexStatus();
+            assertEquals(0, second.changedFiles());
+            assertEquals(second.scannedFiles(), second.unchangedFiles());
+            assertNotNull(restarted.getImage(id));
+            reopened.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testDeletedLegacyFileDoesNotComeBack(@TempDir Path metadataDir) throws Exception {
+        String id = UUID.randomUUID().toString();
+        Path file = Paths.get("images", id + "_deleted.png");
+        Files.write(file, new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A});
+        try {
+            imageService.notificationService = new ImageNotificationService();
+            LogMetadataRepository repository = new LogMetadataRepository(metadataDir, 1000);
+            imageService.repository = repository;
+            imageService.reclaimIntervalMillis = 3_600_000;
+            imageService.warmIndex();
+            imageService.deleteImage(id);
+            assertNull(imageService.getImage(id));
+            // Shut down before the reclaimer ran: the file is still there
+            imageService.shutdown();
+            repository.close();
+            assertTrue(Files.exists(file));
+
+            ImageServiceImpl restarted = new ImageServiceImpl();
+            LogMetadataRepository reopened = new LogMetadataRepository(metadataDir, 1000);
+            restarted.repository = reopened;
+            restarted.migrateLegacy = false;
+            restarted.reclaimIntervalMillis = 3_600_000;
+            restarted.warmIndex();
+            assertNull(restarted.getImage(id));
+            assertEquals(1, restarted.getReclaimStatus().pending());
+            restarted.reclaimer.reclaim();
+            assertFalse(Files.exists(file));
+            restarted.shutdown();
+            reopened.close();
+
+            // The tombstone was purged with the file
+            LogMetadataRepository purged = new LogMetadataRepository(metadataDir, 1000);
+            assertTrue(purged.load().isEmpty());
+            purged.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testMigratesLegacyFileIntoBlobStore(@TempDir Path metadataDir, @TempDir Path blobDir) throws Exception {
+        String id = UUID.randomUUID().toString();
+        Path file = Paths.get("images", id + "_flat.png");
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 42};
+        Files.write(file, png);
+        try {
+            LogMetadataRepository repository = new LogMetadataRepository(metadataDir, 1000);
+            imageService.repository = repository;
+            imageService.blobStore = new BlobStore(blobDir);
+            imageService.reclaimIntervalMillis = 3_600_000;
+            HotFileCache cache = new HotFileCache(1 << 20, 1 << 16);
+            imageService.listeners = List.of(cache);
+            imageService.warmIndex();
+            assertEquals(file.toString(), imageService.getImage(id).getPath());
+            cache.preload(file, png.length);
+            assertNotNull(cache.get(file.toString()));
+
+            imageService.migrator.migrate(List.of(id), 0);
+            Image moved = imageService.getImage(id);
+            assertTrue(imageService.blobStore.owns(Paths.get(moved.getPath())));
+            // The cached copy of the flat file is dropped along with the switch
+            assertNull(cache.get(file.toString()));
+            assertArrayEquals(png, Files.readAllBytes(Paths.get(moved.getPath())));
+            ImageMetadata metadata = imageService.getImageMetadata(id);
+            assertEquals("flat.png", metadata.getName());
+            assertNotNull(metadata.getSha256());
+            assertEquals(1, imageService.getMigrationStatus().migrated());
+            // The flat file stays for downloads that already resolved it
+            assertTrue(Files.exists(file));
+            imageService.shutdown();
+            repository.close();
+
+            // Restarting with both copies on disk keeps the blob and drops the flat file
+            ImageServiceImpl restarted = new ImageServiceImpl();
+            LogMetadataRepository reopened = new LogMetadataRepository(metadataDir, 1000);
+            restarted.repository = reopened;
+            restarted.blobStore = new BlobStore(blobDir);
+            restarted.migrateLegacy = false;
+            restarted.reclaimIntervalMillis = 3_600_000;
+            restarted.warmIndex();
+            assertEquals(moved.getPath(), restarted.getImage(id).getPath());
+            restarted.reclaimer.reclaim();
+            assertFalse(Files.exists(file));
+            assertTrue(Files.exists(Paths.get(moved.getPath())));
+            restarted.shutdown();
+            reopened.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testSweepRemovesOrphans(@TempDir Path blobDir, @TempDir Path metadataDir) throws Exception {
+        LogMetadataRepository repository = new LogMetadataRepository(metadataDir, 1000);
+        imageService.repository = repository;
+        imageService.notificationService = new ImageNotificationService();
+        imageService.blobStore = new BlobStore(blobDir);
+        Image kept = imageService.saveImage(new MockMultipartFile("file", "kept.png", "image/png", new byte[]{1, 2}));
+        Image lost = imageService.saveImage(new MockMultipartFile("file", "lost.png", "image/png", new byte[]{3, 4}));
+        Files.delete(Paths.get(lost.getPath()));
+        // A blob left behind by a crash before its image was recorded
+        Path orphan = imageService.blobStore.pathFor("ab".repeat(32));
+        Files.createDirectories(orphan.getParent());
+        Files.write(orphan, new byte[]{5});
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 2 * 3_600_000));
+
+        imageService.sweepOrphans();
+        assertNotNull(imageService.getImage(kept.getId()));
+        assertTrue(Files.exists(Paths.get(kept.getPath())));
+        assertNull(imageService.getImage(lost.getId()));
+        assertFalse(Files.exists(orphan));
+        ReclaimStatus status = imageService.getReclaimStatus();
+        assertEquals(1, status.orphanFiles());
+        assertEquals(1, status.missingFiles());
+        assertTrue(status.lastSweep() > 0);
+        repository.close();
+    }
+
+    @Test
+    void testSweepKeepsBlobsWithoutDurableRepository(@TempDir Path blobDir) throws Exception {
+        // In memory mode a restart forgets every image, so their blobs must not be swept
+        imageService.blobStore = new BlobStore(blobDir);
+        Path blob = imageService.blobStore.pathFor("cd".repeat(32));
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, new byte[]{6});
+        Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis() - 2 * 3_600_000));
+
+        imageService.sweepOrphans();
+        assertTrue(Files.exists(blob));
+        assertEquals(0, imageService.getReclaimStatus().orphanFiles());
+    }
+
+    @Test
+    void testSweepKeepsImageThatMovedSinceItWasChecked(@TempDir Path blobDir) throws Exception {
+        imageService.notificationService = new ImageNotificationService();
+        imageService.blobStore = new BlobStore(blobDir);
+        Image image = imageService.saveImage(new MockMultipartFile("file", "moved.png", "image/png", new byte[]{6, 7}));
+        // As seen by a sweep before a migration pointed the image at its blob and the flat file went
+        Image seen = new Image(image.getId(), image.getName(), Paths.get("images", image.getId() + "_moved.png").toString());
+        assertFalse(imageService.deleteIfFileMissing(seen));
+        assertNotNull(imageService.getImage(image.getId()));
+
+        Files.delete(Paths.get(image.getPath()));
+        assertTrue(imageService.deleteIfFileMissing(imageService.getImage(image.getId())));
+        assertNull(imageService.getImage(image.getId()));
+    }
+
+    @Test
+    void testRefusesTrafficUntilIndexIsWarm(@TempDir Path metadataDir) throws Exception {
+        List<ReadinessState> states = new CopyOnWriteArrayList<>();
+        imageService.events = event -> {
+            if (event instanceof AvailabilityChangeEvent<?> change && change.getState() instanceof ReadinessState state) {
+                states.add(state);
+                if (state == ReadinessState.ACCEPTING_TRAFFIC) {
+                    imageService.onReadinessChange(new AvailabilityChangeEvent<>(this, state));
+                }
+            }
+        };
+        // Spring Boot reporting the started application as ready does not count before the warm-up
+        imageService.onReadinessChange(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+        assertEquals(List.of(ReadinessState.REFUSING_TRAFFIC), states);
+
+        LogMetadataRepository repository = new LogMetadataRepository(metadataDir, 1000);
+        imageService.repository = repository;
+        imageService.warmIndex();
+        assertEquals(List.of(ReadinessState.REFUSING_TRAFFIC, ReadinessState.ACCEPTING_TRAFFIC), states);
+        imageService.shutdown();
+        repository.close();
+    }
+
+    @Test
+    void testLoadImagesFromDiskWarmsInBackground() throws Exception {
+        imageService.loadImagesFromDisk();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!imageService.getIndexStatus().ready()) {
+            assertTrue(System.currentTimeMillis() < deadline, "index never became ready");
+            Thread.sleep(10);
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.imageservice.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageTypeDetectorTest {
+
+    private static String detect(int... bytes) {
+        byte[] data = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            data[i] = (byte) bytes[i];
+        }
+        return ImageTypeDetector.detect(data, data.length);
+    }
+
+    private static String detect(String ascii) {
+        byte[] data = ascii.getBytes(StandardCharsets.ISO_8859_1);
+        return ImageTypeDetector.detect(data, data.length);
+    }
+
+    @Test
+    void testCommonFormats() {
+        assertEquals("image/jpeg", detect(0xFF, 0xD8, 0xFF, 0xE0));
+        assertEquals("image/png", detect(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0));
+        assertEquals("image/gif", detect("GIF89a\u0001\u0000"));
+        assertEquals("image/webp", detect("RIFF\u0000\u0000\u0000\u0000WEBPVP8 "));
+        assertEquals("image/bmp", detect("BM\u0000\u0000"));
+    }
+
+    @Test
+    void testIsoBmffBrands() {
+        assertEquals("image/avif", detect("\u0000\u0000\u0000\u001cftypavif\u0000\u0000\u0000\u0000avifmif1miaf"));
+        assertEquals("image/avif", detect("\u0000\u0000\u0000\u0018ftypmif1\u0000\u0000\u0000\u0000avif"));
+        assertEquals("image/heic", detect("\u0000\u0000\u0000\u0018ftypheic\u0000\u0000\u0000\u0000mif1"));
+        assertEquals(ImageTypeDetector.UNKNOWN, detect("\u0000\u0000\u0000\u0014ftypisom\u0000\u0000\u0000\u0000"));
+    }
+
+    @Test
+    void testUnknownAndTruncated() {
+        assertEquals(ImageTypeDetector.UNKNOWN, detect("<html><script>"));
+        assertEquals(ImageTypeDetector.UNKNOWN, detect(0xFF, 0xD8));
+        assertEquals(ImageTypeDetector.UNKNOWN, detect());
+    }
+}
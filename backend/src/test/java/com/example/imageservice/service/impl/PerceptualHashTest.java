@@ -0,0 +1,65 @@
+package com.example.imageservice.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerceptualHashTest {
+    @TempDir
+    Path dir;
+
+    private static BufferedImage picture(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(seed);
+        g.scale(width / 100.0, height / 100.0);
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillOval(random.nextInt(80), random.nextInt(80), 10 + random.nextInt(40), 10 + random.nextInt(40));
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return resized;
+    }
+
+    private long hash(BufferedImage image, String format) throws Exception {
+        Path file = dir.resolve("img-" + System.nanoTime() + "." + format);
+        ImageIO.write(image, format, file.toFile());
+        return Long.parseUnsignedLong(PerceptualHash.compute(file), 16);
+    }
+
+    @Test
+    void testResizedAndReencodedCopiesAreClose() throws Exception {
+        BufferedImage original = picture(1600, 1200, 1);
+        long source = hash(original, "png");
+        long smallJpeg = hash(resize(original, 400, 300), "jpg");
+        long other = hash(picture(1600, 1200, 2), "png");
+        assertTrue(Long.bitCount(source ^ smallJpeg) <= 6, "distance " + Long.bitCount(source ^ smallJpeg));
+        assertTrue(Long.bitCount(source ^ other) > 12, "distance " + Long.bitCount(source ^ other));
+    }
+
+    @Test
+    void testUndecodableFileHasNoHash() throws Exception {
+        Path file = dir.resolve("not-an-image.bin");
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        assertNull(PerceptualHash.compute(file));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.imageservice.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testIdenticalContentIsStoredOnce() throws Exception {
+        UploadStager stager = new UploadStager(dir, 1024);
+        BlobStore store = new BlobStore(dir.resolve("blobs"));
+        byte[] data = {1, 2, 3, 4, 5};
+
+        Path first = store.commit(stager.stage(new ByteArrayInputStream(data)), stager);
+        Path second = store.commit(stager.stage(new ByteArrayInputStream(data)), stager);
+        Path other = store.commit(stager.stage(new ByteArrayInputStream(new byte[]{9})), stager);
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertTrue(store.owns(first));
+        assertEquals(first.getFileName().toString().substring(0, 2), first.getParent().getParent().getFileName().toString());
+        BlobStore.Stats stats = store.stats();
+        assertEquals(2, stats.blobs());
+        assertEquals(3, stats.references());
+        assertEquals(11, stats.logicalBytes());
+        assertEquals(6, stats.physicalBytes());
+
+        assertFalse(store.release(first));
+        assertTrue(Files.exists(first));
+        assertTrue(store.release(first));
+        assertFalse(Files.exists(first));
+        assertEquals(1, store.stats().blobs());
+    }
+
+    @Test
+    void testRetainRebuildsCounts() throws Exception {
+        BlobStore store = new BlobStore(dir.resolve("blobs"));
+        Path blob = store.pathFor("ab" + "cd" + "0".repeat(60));
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, new byte[]{1, 2});
+        store.retain(blob, 2);
+        store.retain(blob, 2);
+        assertEquals(2.0, store.stats().dedupRatio());
+        assertFalse(store.release(blob));
+        assertTrue(store.release(blob));
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    void testPathForRejectsNonHashes() {
+        BlobStore store = new BlobStore(dir.resolve("blobs"));
+        assertThrows(IllegalArgumentException.class, () -> store.pathFor("../../../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> store.pathFor("AB".repeat(32)));
+        assertThrows(IllegalArgumentException.class, () -> store.pathFor(null));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.imageservice.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadStagerTest {
+    @TempDir
+    Path dir;
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testStageHashesAndCommits() throws Exception {
+        byte[] data = new byte[300_000];
+        new Random(42).nextBytes(data);
+        data[0] = (byte) 0xFF;
+        data[1] = (byte) 0xD8;
+        data[2] = (byte) 0xFF;
+        UploadStager stager = new UploadStager(dir, 4096);
+
+        StagedUpload upload = stager.stage(new ByteArrayInputStream(data));
+        assertEquals(data.length, upload.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data)), upload.sha256());
+        assertEquals("image/jpeg", upload.mimeType());
+        assertTrue(UploadStager.isTempFile(upload.tempFile()));
+
+        Path target = dir.resolve("id_photo.jpg");
+        stager.commit(upload, target);
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertFalse(Files.exists(upload.tempFile()));
+    }
+
+    @Test
+    void testFailedStreamLeavesNoFile() throws Exception {
+        UploadStager stager = new UploadStager(dir, 1024);
+        InputStream broken = new InputStream() {
+            private int remaining = 5000;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- <= 0) {
+                    throw new IOException("client went away");
+                }
+                return 1;
+            }
+        };
+        assertThrows(IOException.class, () -> stager.stage(broken));
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    void testCleanupRemovesOnlyTempFiles() throws Exception {
+        Files.write(dir.resolve(".upload-abc.tmp"), new byte[]{1});
+        Files.write(dir.resolve("id_keep.png"), new byte[]{1});
+        new UploadStager(dir, 1024).cleanup();
+        assertEquals(1, fileCount());
+        assertTrue(Files.exists(dir.resolve("id_keep.png")));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.imageservice.upload;
+
+import com.example.imageservice.index.ImageQuery;
+import com.example.imageservice.index.SimilarImage;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.service.EnrichmentStatus;
+import com.example.imageservice.service.ImageService;
+import com.example.imageservice.service.IndexStatus;
+import com.example.imageservice.service.MigrationStatus;
+import com.example.imageservice.service.ReclaimStatus;
+import com.example.imageservice.storage.BlobStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkUploadServiceTest {
+    private BulkUploadService service;
+
+    /** Records how many saves run at once; rejects files named bad.jpg. */
+    private static class SlowImageService implements ImageService {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger started = new AtomicInteger();
+
+        @Override
+        public Image saveImage(MultipartFile file) {
+            started.incrementAndGet();
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            if ("bad.jpg".equals(file.getOriginalFilename())) {
+                throw new RuntimeException("disk full");
+            }
+            return new Image("id-" + file.getOriginalFilename(), file.getOriginalFilename(), "images/x");
+        }
+
+        @Override public List<Image> getAllImages() { return List.of(); }
+        @Override public Iterator<Image> findImages(ImageQuery query, String after) { return null; }
+        @Override public Image getImage(String id) { return null; }
+        @Override public Image fetchImage(String id) { return null; }
+        @Override public void putReplica(Image image, ImageMetadata metadata) {}
+        @Override public List<SimilarImage> findSimilar(String id, int maxDistance, int limit) { return null; }
+        @Override public void deleteImage(String id) {}
+        @Override public ImageMetadata getImageMetadata(String id) { return null; }
+        @Override public ImageMetadata setImageMetadata(String id, ImageMetadata metadata) { return metadata; }
+        @Override public BlobStore.Stats getStorageStats() { return null; }
+        @Override public IndexStatus getIndexStatus() { return null; }
+        @Override public ReclaimStatus getReclaimStatus() { return null; }
+        @Override public MigrationStatus getMigrationStatus() { return null; }
+        @Override public EnrichmentStatus getEnrichmentStatus() { return null; }
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static List<MultipartFile> files(int count, int size) {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(new MockMultipartFile("files", "img" + i + ".jpg", "image/jpeg", new byte[size]));
+        }
+        return files;
+    }
+
+    @Test
+    void testFilesStoredConcurrentlyInOrder() {
+        SlowImageService images = new SlowImageService();
+        service = new BulkUploadService(images, 4, 1 << 20);
+        List<UploadResult> results = service.saveAll(files(8, 10));
+        assertEquals(8, results.size());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(results.get(i).success());
+            assertEquals("img" + i + ".jpg", results.get(i).image().getName());
+        }
+        assertTrue(images.maxRunning.get() > 1);
+        assertTrue(images.maxRunning.get() <= 4);
+    }
+
+    @Test
+    void testPartialFailureDoesNotAbortBatch() {
+        service = new BulkUploadService(new SlowImageService(), 2, 1 << 20);
+        List<MultipartFile> files = new ArrayList<>(files(2, 10));
+        files.add(1, new MockMultipartFile("files", "bad.jpg", "image/jpeg", new byte[10]));
+        files.add(new MockMultipartFile("files", "empty.jpg", "image/jpeg", new byte[0]));
+        List<UploadResult> results = service.saveAll(files);
+        assertEquals(List.of(true, false, true, false), results.stream().map(UploadResult::success).toList());
+        assertEquals("bad.jpg", results.get(1).filename());
+        assertTrue(results.get(1).error().contains("disk full"));
+        assertEquals("Empty file", results.get(3).error());
+    }
+
+    @Test
+    void testInFlightBytesLimitConcurrency() {
+        SlowImageService images = new SlowImageService();
+        // Room for one 3 KiB file at a time despite four workers
+        service = new BulkUploadService(images, 4, 4096);
+        List<UploadResult> results = service.saveAll(files(4, 3072));
+        assertTrue(results.stream().allMatch(UploadResult::success));
+        assertEquals(1, images.maxRunning.get());
+    }
+
+    @Test
+    void testInterruptCancelsOnlyFilesNotStarted() throws Exception {
+        SlowImageService images = new SlowImageService();
+        service = new BulkUploadService(images, 1, 1 << 20);
+        List<UploadResult> results = new ArrayList<>();
+        AtomicBoolean keptInterrupt = new AtomicBoolean();
+        Thread request = new Thread(() -> {
+            results.addAll(service.saveAll(files(4, 10)));
+            keptInterrupt.set(Thread.currentThread().isInterrupted());
+        });
+        request.start();
+        while (images.running.get() == 0) {
+            Thread.sleep(1);
+        }
+        request.interrupt();
+        request.join(5000);
+        // The file being stored when the request was interrupted is waited for, not reported failed
+        assertEquals(List.of(true, false, false, false), results.stream().map(UploadResult::success).toList());
+        assertEquals(List.of(false, true, true, true), results.stream().map(UploadResult::cancelled).toList());
+        assertEquals(1, images.started.get());
+        assertTrue(keptInterrupt.get());
+    }
+}
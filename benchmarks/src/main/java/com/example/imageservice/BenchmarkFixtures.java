@@ -0,0 +1,87 @@
+package com.example.imageservice;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import com.example.imageservice.persistence.ImageRecord;
+import com.example.imageservice.persistence.InMemoryMetadataRepository;
+import com.example.imageservice.persistence.MetadataRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic inputs shared by the benchmarks. Everything is derived from a fixed seed so
+ * runs on different commits measure the same work.
+ */
+public final class BenchmarkFixtures {
+    public static final long SEED = 42;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+    private static final String[] MIME_TYPES = {"image/png", "image/jpeg", "image/gif", "image/webp"};
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * Pseudo-random bytes that start with a PNG signature, so they are sniffed as an image.
+     */
+    public static byte[] imageBytes(long seed, int size) {
+        byte[] bytes = new byte[Math.max(size, PNG_SIGNATURE.length)];
+        new Random(seed).nextBytes(bytes);
+        System.arraycopy(PNG_SIGNATURE, 0, bytes, 0, PNG_SIGNATURE.length);
+        return bytes;
+    }
+
+    /**
+     * Stable, seeded image ids.
+     */
+    public static String id(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    /**
+     * Metadata records for images that do not exist on disk, for index-only benchmarks.
+     */
+    public static List<ImageRecord> records(int count) {
+        Random random = new Random(SEED);
+        List<ImageRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = id(random);
+            String name = "image-" + i + ".png";
+            Image image = new Image(id, name, "images/blobs/" + id);
+            ImageMetadata metadata = new ImageMetadata(id, name, MIME_TYPES[i % MIME_TYPES.length],
+                    1024 + random.nextInt(4 << 20), 1_700_000_000_000L + i);
+            records.add(new ImageRecord(id, image, metadata));
+        }
+        return records;
+    }
+
+    /**
+     * A repository that serves a fixed set of records, as if replayed from the metadata log,
+     * and discards writes.
+     */
+    public static MetadataRepository fixedRepository(List<ImageRecord> records) {
+        return new InMemoryMetadataRepository() {
+            @Override
+            public List<ImageRecord> load() {
+                return records;
+            }
+        };
+    }
+
+    public static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
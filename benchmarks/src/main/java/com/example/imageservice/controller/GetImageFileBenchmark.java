@@ -0,0 +1,101 @@
+package com.example.imageservice.controller;
+
+import com.example.imageservice.BenchmarkFixtures;
+import com.example.imageservice.cache.HotFileCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving path behind GET /api/images/{id}/file: a full body from disk and from the hot-file
+ * cache, a conditional request answered with 304, and a 64 KiB range. The response body is
+ * collected in memory by the servlet mock, so the numbers exclude network I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetImageFileBenchmark {
+    private static final String ETAG = "\"bench\"";
+    private static final String MIME_TYPE = "image/png";
+
+    @Param({"16384", "1048576"})
+    int size;
+
+    private final ImageFileSender sender = new ImageFileSender();
+    // Shared: creating a servlet context per request would dominate the measurement
+    private final MockServletContext servletContext = new MockServletContext();
+    private HotFileCache cache;
+    private Path dir;
+    private Path file;
+    private long lastModified;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bench-files");
+        file = dir.resolve("image.png");
+        Files.write(file, BenchmarkFixtures.imageBytes(BenchmarkFixtures.SEED, size));
+        lastModified = Files.getLastModifiedTime(file).toMillis();
+        cache = new HotFileCache(64L << 20, 4L << 20);
+        cache.preload(file, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse fromDisk() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(file, size, lastModified, MIME_TYPE, ETAG, new MockHttpServletRequest(servletContext, "GET", "/file"), response);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse fromHotCache() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(file, size, lastModified, MIME_TYPE, ETAG, cache::getOrLoad,
+                new MockHttpServletRequest(servletContext, "GET", "/file"), response);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse notModified() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/file");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(file, size, lastModified, MIME_TYPE, ETAG, request, response);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse range() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/file");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-65535");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(file, size, lastModified, MIME_TYPE, ETAG, request, response);
+        return response;
+    }
+}
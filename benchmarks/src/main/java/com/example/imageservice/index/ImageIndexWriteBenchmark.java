@@ -0,0 +1,77 @@
+package com.example.imageservice.index;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index writes under contention at 1, 8 and 32 threads: each operation adds an image with
+ * metadata (so the secondary indexes are updated too) and removes the thread's oldest one, and
+ * every thousandth also lists the index. Results are operations per second across all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageIndexWriteBenchmark {
+    // Images each thread keeps in the index, so its size stays constant
+    private static final int LIVE_PER_THREAD = 1024;
+
+    private final ImageIndex index = new ImageIndex();
+
+    /** One writer's own ids. */
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        final String prefix = THREADS.getAndIncrement() + "-";
+        long next;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void putRemove1(Writer writer, Blackhole bh) {
+        putRemove(writer, bh);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void putRemove8(Writer writer, Blackhole bh) {
+        putRemove(writer, bh);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void putRemove32(Writer writer, Blackhole bh) {
+        putRemove(writer, bh);
+    }
+
+    private void putRemove(Writer writer, Blackhole bh) {
+        long i = writer.next++;
+        String id = writer.prefix + i;
+        String name = "img" + (i % 512) + ".png";
+        ImageMetadata metadata = new ImageMetadata(id, name, i % 2 == 0 ? "image/png" : "image/jpeg", 1000 + i % 4096);
+        index.put(new Image(id, name, "images/" + id), metadata);
+        if (i >= LIVE_PER_THREAD) {
+            bh.consume(index.remove(writer.prefix + (i - LIVE_PER_THREAD)));
+        }
+        if (i % 1000 == 0) {
+            bh.consume(index.values());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.imageservice.index;
+
+import com.example.imageservice.BenchmarkFixtures;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near-duplicate lookup ({@code /api/images/{id}/similar}) through the index's multi-index hash against
+ * a linear scan over the same hashes held in a flat array, the best case for a scan. The
+ * library mixes unrelated pictures with clusters of edited copies a few bits apart from them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarImagesBenchmark {
+    private static final int QUERIES = 1024;
+    private static final int LIMIT = 100;
+
+    @Param({"10000", "100000"})
+    int images;
+
+    @Param({"4", "10"})
+    int maxDistance;
+
+    private final ImageIndex index = new ImageIndex();
+    private long[] hashes;
+    private String[] ids;
+    private int[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(BenchmarkFixtures.SEED);
+        hashes = new long[images];
+        ids = new String[images];
+        for (int i = 0; i < images; i++) {
+            // One picture in four has one to three edited copies
+            boolean copy = i > 0 && random.nextInt(4) == 0;
+            long hash = copy ? hashes[i - 1] : random.nextLong();
+            for (int flips = copy ? 1 + random.nextInt(6) : 0; flips > 0; flips--) {
+                hash ^= 1L << random.nextInt(64);
+            }
+            hashes[i] = hash;
+            ids[i] = BenchmarkFixtures.id(random);
+            ImageMetadata metadata = new ImageMetadata(ids[i], "bench-" + i + ".jpg", "image/jpeg", 4096, 0);
+            metadata.setPerceptualHash(String.format("%016x", hash));
+            index.put(new Image(ids[i], metadata.getName(), "images/blobs/" + ids[i]), metadata);
+        }
+        queries = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = random.nextInt(images);
+        }
+    }
+
+    @Benchmark
+    public List<SimilarImage> hashIndex() {
+        int query = queries[next++ & (QUERIES - 1)];
+        return index.similar(ids[query], maxDistance, LIMIT);
+    }
+
+    @Benchmark
+    public List<String> linearScan() {
+        int query = queries[next++ & (QUERIES - 1)];
+        long hash = hashes[query];
+        List<String> matches = new ArrayList<>();
+        for (int i = 0; i < hashes.length; i++) {
+            if (i != query && Long.bitCount(hashes[i] ^ hash) <= maxDistance) {
+                matches.add(ids[i]);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.imageservice.loadtest;
+
+import com.example.imageservice.BenchmarkFixtures;
+import com.example.imageservice.ImageserviceApplication;
+import com.example.imageservice.config.ExecutionMode;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.service.ImageService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent-download load test comparing Tomcat's platform thread pool with virtual threads.
+ * <p>
+ * For each mode the backend is started in-process ({@code spring.threads.virtual.enabled} off,
+ * then on), seeded with images through the service, and hammered with
+ * {@code GET /api/images/{id}/file} from a fixed number of client threads, each with its own
+ * connection. Throughput and latency percentiles are printed per mode. Client and server share
+ * the machine, so compare the modes with each other rather than with absolute numbers.
+ * <p>
+ * Requests turned away with {@code 503} by the concurrency limits are counted as shed rather than
+ * as errors, and left out of the latency figures. With {@code --limits=on,off} each mode is also
+ * run with the limits disabled, which shows how latency of the admitted requests stays bounded
+ * when clients outnumber what the server can handle.
+ * <p>
+ * Options ({@code --name=value}): {@code clients} (512), {@code seconds} (20), {@code warmup} (5),
+ * {@code files} (200), {@code size} bytes (262144), {@code modes} (platform,virtual),
+ * {@code limits} (on). With
+ * {@code url} an already running server is measured instead, using the images it holds. Any
+ * other {@code --key=value} is passed to the in-process server, e.g.
+ * {@code --server.tomcat.threads.max=50} or {@code --imageservice.cache.capacity-bytes=1048576}.
+ * Virtual mode needs Java 21; it is skipped on older JVMs.
+ */
+public final class DownloadLoadTest {
+    private static final List<String> OPTIONS = List.of("clients", "seconds", "warmup", "files", "size", "modes", "limits", "url");
+    // Connection.get result for a 503
+    private static final long SHED = -2;
+
+    private DownloadLoadTest() {}
+
+    /** What one measured run produced. */
+    record Result(String mode, int clients, long requests, long errors, long shed, long bytes, double seconds,
+                  long[] latencies) {
+        double percentileMillis(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(p / 100 * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    /**
+     * A minimal blocking HTTP/1.1 client over one keep-alive socket. Reads bodies with a
+     * Content-Length and reconnects after anything else, so the client adds no threads or
+     * selectors of its own to the measurement.
+     */
+    static final class Connection {
+        private final URI target;
+        private final byte[] buffer = new byte[64 * 1024];
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+        // Retry-After of the last 503, in seconds
+        private int retryAfter;
+
+        Connection(URI target) {
+            this.target = target;
+        }
+
+        /**
+         * @return Body length of a 200 response, {@link #SHED} for a 503, or -1 on any other status
+         *         or I/O error
+         */
+        long get(String path) {
+            try {
+                if (socket == null) {
+                    socket = new Socket(target.getHost(), target.getPort() < 0 ? 80 : target.getPort());
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(60_000);
+                    in = new BufferedInputStream(socket.getInputStream(), buffer.length);
+                    out = socket.getOutputStream();
+                }
+                out.write(("GET " + path + " HTTP/1.1\r\nHost: " + target.getHost() + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                String status = readLine();
+                long length = -1;
+                boolean closing = false;
+                retryAfter = 0;
+                String line;
+                while (!(line = readLine()).isEmpty()) {
+                    int colon = line.indexOf(':');
+                    String name = colon > 0 ? line.substring(0, colon) : "";
+                    if (name.equalsIgnoreCase("Content-Length")) {
+                        length = Long.parseLong(line.substring(colon + 1).trim());
+                    } else if (name.equalsIgnoreCase("Connection")) {
+                        closing = line.substring(colon + 1).trim().equalsIgnoreCase("close");
+                    } else if (name.equalsIgnoreCase("Retry-After")) {
+                        retryAfter = Integer.parseInt(line.substring(colon + 1).trim());
+                    }
+                }
+                if (length < 0) {
+                    close();
+                    return -1;
+                }
+                long remaining = length;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException();
+                    }
+                    remaining -= read;
+                }
+                if (closing) {
+                    // Tomcat drops the connection after a 503
+                    close();
+                }
+                if (status.startsWith("HTTP/1.1 503")) {
+                    return SHED;
+                }
+                return status.startsWith("HTTP/1.1 200") ? length : -1;
+            } catch (IOException | RuntimeException e) {
+                close();
+                return -1;
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException();
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already gone
+                }
+                socket = null;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> serverArgs = new ArrayList<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            if (pair.length == 2 && OPTIONS.contains(pair[0])) {
+                options.put(pair[0], pair[1]);
+            } else {
+                serverArgs.add(arg);
+            }
+        }
+        int clients = Integer.parseInt(options.getOrDefault("clients", "512"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int files = Integer.parseInt(options.getOrDefault("files", "200"));
+        int size = Integer.parseInt(options.getOrDefault("size", "262144"));
+
+        List<Result> results = new ArrayList<>();
+        if (options.containsKey("url")) {
+            String base = options.get("url").replaceAll("/+$", "");
+            results.add(run("external", base, listIds(base), clients, warmup, seconds));
+        } else {
+            for (String mode : options.getOrDefault("modes", "platform,virtual").split(",")) {
+                boolean virtual = "virtual".equals(mode);
+                if (virtual && !ExecutionMode.virtualThreads(true)) {
+                    System.out.println("Skipping virtual mode: needs Java 21, running " + Runtime.version());
+                    continue;
+                }
+                for (String limits : options.getOrDefault("limits", "on").split(",")) {
+                    boolean limited = !"off".equals(limits);
+                    results.add(runInProcess(limited ? mode : mode + "/nolimit", virtual, limited, serverArgs,
+                            clients, files, size, warmup, seconds));
+                }
+            }
+        }
+
+        System.out.printf("%n%-16s %8s %10s %8s %8s %10s %10s %9s %9s %9s %9s%n", "mode", "clients", "requests",
+                "errors", "shed", "req/s", "MB/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Result r : results) {
+            System.out.printf("%-16s %8d %10d %8d %8d %10.0f %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    r.mode(), r.clients(), r.requests(), r.errors(), r.shed(), r.requests() / r.seconds(),
+                    r.bytes() / r.seconds() / (1 << 20), r.percentileMillis(50), r.percentileMillis(99),
+                    r.percentileMillis(99.9), r.percentileMillis(100));
+        }
+    }
+
+    private static Result runInProcess(String mode, boolean virtual, boolean limited, List<String> serverArgs,
+                                       int clients, int files, int size, int warmup, int seconds) throws Exception {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--imageservice.limit.enabled=" + limited,
+                "--imageservice.metadata.store=memory",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        args.addAll(serverArgs);
+        SpringApplication app = new SpringApplication(ImageserviceApplication.class);
+        try (ConfigurableApplicationContext context = app.run(args.toArray(String[]::new))) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ImageService images = context.getBean(ImageService.class);
+            List<String> ids = new ArrayList<>(files);
+            for (int i = 0; i < files; i++) {
+                byte[] bytes = BenchmarkFixtures.imageBytes(BenchmarkFixtures.SEED + i, size);
+                Image image = images.saveImage(new MockMultipartFile("file", "load-" + i + ".png", "image/png", bytes));
+                ids.add(image.getId());
+            }
+            return run(mode, "http://localhost:" + port, ids, clients, warmup, seconds);
+        }
+    }
+
+    private static List<String> listIds(String base) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(base + "/api/images")).build(), HttpResponse.BodyHandlers.ofString());
+        List<String> ids = new ArrayList<>();
+        for (JsonNode image : new ObjectMapper().readTree(response.body())) {
+            ids.add(image.get("id").asText());
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No images on " + base + "; upload some first");
+        }
+        return ids;
+    }
+
+    /**
+     * Download random images from all clients at once: warm up, then measure for a fixed time.
+     */
+    private static Result run(String mode, String base, List<String> ids, int clients, int warmup, int seconds)
+            throws InterruptedException {
+        System.out.printf("%s: %d clients against %s (%d images), %ds warm-up, %ds measured%n",
+                mode, clients, base, ids.size(), warmup, seconds);
+        long start = System.nanoTime();
+        long measureFrom = start + Duration.ofSeconds(warmup).toNanos();
+        long end = measureFrom + Duration.ofSeconds(seconds).toNanos();
+        URI target = URI.create(base);
+        AtomicLong errors = new AtomicLong();
+        AtomicLong shed = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            pool.execute(() -> {
+                // One keep-alive connection per client, like independent browsers
+                Connection connection = new Connection(target);
+                long[] own = new long[1024];
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (true) {
+                        long sent = System.nanoTime();
+                        if (sent >= end) {
+                            break;
+                        }
+                        String id = ids.get(random.nextInt(ids.size()));
+                        long received = connection.get(target.getRawPath() + "/api/images/" + id + "/file");
+                        long finished = System.nanoTime();
+                        if (received == SHED) {
+                            if (sent >= measureFrom) {
+                                shed.incrementAndGet();
+                            }
+                            // Back off as asked, like a well-behaved client
+                            try {
+                                Thread.sleep(connection.retryAfter * 1000L);
+                            } catch (InterruptedException e) {
+                                break;
+                            }
+                            continue;
+                        }
+                        if (sent < measureFrom) {
+                            continue;
+                        }
+                        if (received < 0) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        bytes.addAndGet(received);
+                        if (count == own.length) {
+                            own = Arrays.copyOf(own, count * 2);
+                        }
+                        own[count++] = finished - sent;
+                    }
+                } finally {
+                    latencies[client] = own;
+                    counts[client] = count;
+                    connection.close();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[(int) total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        return new Result(mode, clients, total, errors.get(), shed.get(), bytes.get(), seconds, all);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.imageservice.notification;
+
+import com.example.imageservice.model.Image;
+import com.example.imageservice.model.ImageMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost on the publishing thread of fanning an image event out to N SSE subscribers, with
+ * immediate sends (window 0) and with the default 50 ms coalescing window. Subscribers discard
+ * what they receive, so delivery threads measure framing and queueing rather than sockets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotifyClientsBenchmark {
+    @Param({"1", "100", "1000"})
+    int subscribers;
+
+    @Param({"0", "50"})
+    long batchWindowMillis;
+
+    private ImageNotificationService service;
+    private final LongAdder received = new LongAdder();
+    private ImageEvent event;
+
+    /** Emitter that drops every message. */
+    private final class DiscardingEmitter extends SseEmitter {
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            received.increment();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new ImageNotificationService(256, 0, 1024, batchWindowMillis, 500);
+        for (int i = 0; i < subscribers; i++) {
+            service.subscribe(new DiscardingEmitter(), null);
+        }
+        Image image = new Image("bench", "bench.png", "images/blobs/bench");
+        event = ImageEvent.created(image, new ImageMetadata("bench", "bench.png", "image/png", 4096, 0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public ImageEvent publish() {
+        return service.publish(event);
+    }
+}
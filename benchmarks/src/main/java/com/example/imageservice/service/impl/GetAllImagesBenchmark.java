@@ -0,0 +1,81 @@
+package com.example.imageservice.service.impl;
+
+import com.example.imageservice.BenchmarkFixtures;
+import com.example.imageservice.index.ImageQuery;
+import com.example.imageservice.model.Image;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing path behind GET /api/images: the full snapshot, its JSON rendering, and cursor pages
+ * with and without a filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetAllImagesBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "100000"})
+    int images;
+
+    private ImageServiceImpl service;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ImageQuery pngOnly = new ImageQuery();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new ImageServiceImpl();
+        service.repository = BenchmarkFixtures.fixedRepository(BenchmarkFixtures.records(images));
+        service.warmIndex();
+        pngOnly.setMimeType("image/png");
+    }
+
+    @Benchmark
+    public List<Image> getAllImages() {
+        return service.getAllImages();
+    }
+
+    @Benchmark
+    public void getAllImagesAsJson() throws IOException {
+        mapper.writeValue(OutputStream.nullOutputStream(), service.getAllImages());
+    }
+
+    @Benchmark
+    public void firstPage(Blackhole bh) {
+        page(new ImageQuery(), bh);
+    }
+
+    @Benchmark
+    public void filteredPage(Blackhole bh) {
+        page(pngOnly, bh);
+    }
+
+    private void page(ImageQuery query, Blackhole bh) {
+        Iterator<Image> it = service.findImages(query, null);
+        for (int i = 0; i < PAGE_SIZE && it.hasNext(); i++) {
+            bh.consume(it.next());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.imageservice.service.impl;
+
+import com.example.imageservice.BenchmarkFixtures;
+import com.example.imageservice.persistence.ImageRecord;
+import com.example.imageservice.persistence.InMemoryMetadataRepository;
+import com.example.imageservice.service.IndexStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup warm-up over a synthetic image directory of legacy {@code <id>_<name>} files.
+ * "cold" has no stored metadata, so every file is read and sniffed; "incremental" starts from
+ * the metadata a previous run stored, so unchanged files are only stat'ed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LoadImagesFromDiskBenchmark {
+    @Param({"1000", "10000"})
+    int files;
+
+    @Param({"cold", "incremental"})
+    String mode;
+
+    private final List<Path> created = new ArrayList<>();
+    private List<ImageRecord> stored = List.of();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Paths.get("images");
+        Files.createDirectories(dir);
+        Random random = new Random(BenchmarkFixtures.SEED);
+        byte[] content = BenchmarkFixtures.imageBytes(BenchmarkFixtures.SEED, 2048);
+        for (int i = 0; i < files; i++) {
+            Path file = dir.resolve(BenchmarkFixtures.id(random) + "_bench-" + i + ".png");
+            Files.write(file, content);
+            created.add(file);
+        }
+        if (mode.equals("incremental")) {
+            // Capture what a first start would have written back
+            List<ImageRecord> captured = new ArrayList<>();
+            ImageServiceImpl first = new ImageServiceImpl();
+            first.migrateLegacy = false;
+            first.repository = new InMemoryMetadataRepository() {
+                @Override
+                public void putAll(Collection<ImageRecord> records) {
+                    captured.addAll(records);
+                }
+            };
+            first.warmIndex();
+            first.shutdown();
+            stored = captured;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path file : created) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public IndexStatus warmIndex() {
+        ImageServiceImpl service = new ImageServiceImpl();
+        service.repository = BenchmarkFixtures.fixedRepository(stored);
+        // Measure the warm-up only; moving the legacy files would change the fixture
+        service.migrateLegacy = false;
+        service.warmIndex();
+        // Stop the reclaimer and orphan sweep the warm-up started, so they do not overlap the next run
+        service.shutdown();
+        return service.getIndexStatus();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.imageservice.service.impl;
+
+import com.example.imageservice.BenchmarkFixtures;
+import com.example.imageservice.model.Image;
+import com.example.imageservice.notification.ImageNotificationService;
+import com.example.imageservice.persistence.LogMetadataRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload path: staging, hashing, blob commit and metadata persistence for one file.
+ * Every invocation stores distinct content, so deduplication never short-circuits the write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveImageBenchmark {
+    @Param({"4096", "262144", "2097152"})
+    int size;
+
+    /** "memory" keeps metadata in RAM only; "log" adds the fsynced write-ahead log. */
+    @Param({"memory", "log"})
+    String store;
+
+    private ImageServiceImpl service;
+    private LogMetadataRepository log;
+    private Path metadataDir;
+    private byte[] content;
+    private long counter;
+    private final List<String> saved = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        service = new ImageServiceImpl();
+        service.notificationService = new ImageNotificationService();
+        if (store.equals("log")) {
+            metadataDir = Files.createTempDirectory("bench-metadata");
+            log = new LogMetadataRepository(metadataDir, 10_000);
+            service.repository = log;
+        }
+        content = BenchmarkFixtures.imageBytes(BenchmarkFixtures.SEED, size);
+    }
+
+    @Benchmark
+    public Image saveImage() {
+        // Make the content unique without copying it
+        ByteBuffer.wrap(content, 8, 8).putLong(++counter);
+        Image image = service.saveImage(new MockMultipartFile("file", "bench.png", "image/png", content));
+        saved.add(image.getId());
+        return image;
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteSaved() {
+        for (String id : saved) {
+            service.deleteImage(id);
+        }
+        // Remove the files now rather than leaving them to the background reclaimer
+        service.reclaimer.reclaim();
+        saved.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.notificationService.shutdown();
+        if (log != null) {
+            log.close();
+            BenchmarkFixtures.deleteRecursively(metadataDir);
+        }
+    }
+}
@@ -15,6 +15,49 @@ const COLORS = {
 
 const API_URL = "http://localhost:8080/api/images";
 const SSE_URL = `${API_URL}/stream`;
+const PLAYLIST_URL = `${API_URL}/playlist`;
+const FILES_URL = `${API_URL}/files`;
+const EMPTY_STEP = { images: [], metadata: {}, cursor: null, prefetch: [], intervalMillis: 2000, total: 0, loadedAt: 0 };
+
+// Split a multipart/mixed response from FILES_URL into { id, status, type, body } parts. Every
+// part has a Content-Length, so bodies are cut by length instead of searched for the boundary.
+function parseParts(buffer, contentType) {
+  const match = /boundary=([^;]+)/.exec(contentType || "");
+  if (!match) return [];
+  const delimiter = `--${match[1]}`;
+  const bytes = new Uint8Array(buffer);
+  const decoder = new TextDecoder("ascii");
+  const parts = [];
+  let pos = 0;
+  const readLine = () => {
+    let end = pos;
+    while (end + 1 < bytes.length && !(bytes[end] === 13 && bytes[end + 1] === 10)) end++;
+    if (end + 1 >= bytes.length) return null;
+    const line = decoder.decode(bytes.subarray(pos, end));
+    pos = end + 2;
+    return line;
+  };
+  while (pos < bytes.length) {
+    let line = readLine();
+    if (line === "") line = readLine(); // the line break closing the previous body
+    if (line !== delimiter) break; // closing delimiter
+    const headers = {};
+    for (let header = readLine(); header; header = readLine()) {
+      const colon = header.indexOf(":");
+      headers[header.slice(0, colon).trim().toLowerCase()] = header.slice(colon + 1).trim();
+    }
+    const length = parseInt(headers["content-length"], 10);
+    if (isNaN(length)) break;
+    parts.push({
+      id: (headers["content-id"] || "").replace(/^<|>$/g, ""),
+      status: headers["x-status"] ? parseInt(headers["x-status"], 10) : 200,
+      type: headers["content-type"],
+      body: buffer.slice(pos, pos + length),
+    });
+    pos += length;
+  }
+  return parts;
+}
 
 function App() {
   // Delete handler for images (optimistic update)
@@ -25,11 +68,7 @@ function App() {
   // 3. Disable delete button while request is pending to avoid double deletes.
   // 4. Use local cache reconciliation (SWR/React Query) for robust optimistic updates.
   function handleDelete(id) {
-    setImages(prev => {
-      const next = prev.filter(img => img.id !== id);
-      if (next.length === 0) setFrameIndices(Array(frameCount).fill(0));
-      return next;
-    });
+    setStep(prev => ({ ...prev, images: prev.images.filter(img => img.id !== id) }));
     fetch(`${API_URL}/${id}`, { method: 'DELETE' })
       .then((res) => {
         if (res.ok) {
@@ -44,11 +83,16 @@ function App() {
         document.dispatchEvent(new CustomEvent('toast', { detail: { message: 'Failed to delete', type: 'error' } }));
       });
   }
-  const [images, setImages] = useState([]);
+  // The server owns the slideshow order; we only hold the step on screen
+  const [step, setStep] = useState(EMPTY_STEP);
   const [frameCount, setFrameCount] = useState(2); // default 2 frames
-  const [frameIndices, setFrameIndices] = useState([0, 0]);
   const [toast, setToast] = useState(null); // { message, type }
-  const intervalRef = useRef(null);
+  const stepCursorRef = useRef(null); // cursor the current step was fetched with
+  const frameCountRef = useRef(frameCount);
+  // Image id -> object URL of its bytes, for the step on screen and the one after it
+  const [frameUrls, setFrameUrls] = useState({});
+  const frameUrlsRef = useRef({});
+  const frameLoadRef = useRef(0);
 
   // Show toast for 2 seconds
   const showToast = (message, type = 'success') => {
@@ -68,69 +112,108 @@ function App() {
     return () => document.removeEventListener('toast', handler);
   }, []);
 
-  useEffect(() => {
-    fetch(API_URL)
-      .then((res) => res.json())
+  // Fetch the bodies of `ids` not held yet in one request and release those no longer needed
+  const loadFrames = (ids) => {
+    const wanted = new Set(ids);
+    const missing = [...wanted].filter((id) => !frameUrlsRef.current[id]);
+    const load = frameLoadRef.current + 1;
+    frameLoadRef.current = load;
+    const request = missing.length === 0
+      ? Promise.resolve([])
+      : fetch(`${FILES_URL}?${new URLSearchParams({ ids: missing.join(",") })}`)
+          .then((res) => (res.ok ? res.arrayBuffer().then((body) => parseParts(body, res.headers.get("Content-Type"))) : Promise.reject(res)))
+          .catch(() => missing.map((id) => ({ id, status: 0 })));
+    request.then((parts) => {
+      // A slower, older load only adds; the latest decides what to keep
+      const latest = load === frameLoadRef.current;
+      const urls = {};
+      for (const [id, url] of Object.entries(frameUrlsRef.current)) {
+        if (wanted.has(id) || !latest) urls[id] = url;
+        else URL.revokeObjectURL(url);
+      }
+      for (const part of parts) {
+        if (urls[part.id]) continue;
+        // An image the batch could not deliver falls back to its own request
+        urls[part.id] = part.status === 200
+          ? URL.createObjectURL(new Blob([part.body], { type: part.type }))
+          : `${API_URL}/${part.id}/file`;
+      }
+      frameUrlsRef.current = urls;
+      setFrameUrls(urls);
+    });
+  };
+
+  // Fetch the step after `cursor` (null = from the start) and preload the images that follow it
+  const loadStep = (cursor) => {
+    const params = new URLSearchParams({ frames: frameCountRef.current });
+    if (cursor) params.set("cursor", cursor);
+    fetch(`${PLAYLIST_URL}?${params}`)
+      .then((res) => (res.ok ? res.json() : Promise.reject(res)))
       .then((data) => {
-        setImages(data);
+        stepCursorRef.current = cursor;
+        setStep({ ...data, loadedAt: Date.now() });
+        // The frames shown now were prefetched with the previous step, so usually only the next ones are fetched
+        loadFrames([...data.images.map((img) => img.id), ...data.prefetch]);
+      })
+      .catch(() => {
+        // Keep showing the current step and retry after another interval
+        setStep((prev) => ({ ...prev, loadedAt: Date.now() }));
       });
-  }, []);
+  };
+
+  useEffect(() => {
+    frameCountRef.current = frameCount;
+    loadStep(null);
+  }, [frameCount]);
+
+  // Advance when the server-chosen interval has elapsed (deleting a shown image does not restart it)
+  useEffect(() => {
+    const timer = setTimeout(() => loadStep(step.cursor), step.intervalMillis);
+    return () => clearTimeout(timer);
+  }, [step.loadedAt]);
 
   useEffect(() => {
+    // EventSource resends the last event id on reconnect, so the server replays what we missed
     const evtSource = new EventSource(SSE_URL);
     evtSource.onmessage = (e) => {
-      let event;
+      let events;
       try {
-        event = JSON.parse(e.data);
+        events = JSON.parse(e.data);
       } catch {
         return;
       }
-      if (event && event.id && event.name && event.path) {
-        setImages((prev) => {
-          // If image already exists, skip
-          if (prev.some((img) => img.id === event.id)) return prev;
-          return [...prev, event];
-        });
-      } else if (typeof event === "string" && event.startsWith("deleted:")) {
-        const id = event.replace("deleted:", "");
-        setImages((prev) => {
-          const next = prev.filter((img) => img.id !== id);
-          // If no images left, reset frameIndices
-          if (next.length === 0) setFrameIndices(Array(frameCount).fill(0));
-          return next;
+      // Each message is a batch of coalesced events; apply them in one state update
+      if (!Array.isArray(events)) return;
+      if (events.some((event) => event.type === "resync")) {
+        // Missed events are no longer available; fetch the current step again
+        loadStep(stepCursorRef.current);
+        return;
+      }
+      // New images join the server's playlist on their own; only changes to images on screen matter here
+      const deleted = new Set(events.filter((event) => event.type === "deleted").map((event) => event.id));
+      if (deleted.size > 0) {
+        setStep((prev) => ({ ...prev, images: prev.images.filter((img) => !deleted.has(img.id)) }));
+      }
+      // Dimensions and colour arrive once the server has read the file
+      const updated = events.filter((event) => event.type === "metadata_updated");
+      if (updated.length > 0) {
+        setStep((prev) => {
+          const metadata = { ...prev.metadata };
+          for (const event of updated) {
+            if (metadata[event.id]) metadata[event.id] = event.metadata;
+          }
+          return { ...prev, metadata };
         });
       }
     };
     return () => evtSource.close();
   }, []);
 
-  // Multi-frame cycling logic
-  useEffect(() => {
-    // Always keep indices in range after images or frameCount change
-    if (intervalRef.current) clearInterval(intervalRef.current);
-    if (images.length === 0) {
-      setFrameIndices(Array(frameCount).fill(0));
-      return;
-    }
-    setFrameIndices(prev => {
-      // If frameCount increased, fill new indices with 0
-      let next = prev.slice(0, frameCount);
-      while (next.length < frameCount) next.push(0);
-      // Clamp/wrap all indices
-      return next.map(idx => idx % images.length);
-    });
-    intervalRef.current = setInterval(() => {
-      setFrameIndices(prev => prev.map(idx => (images.length > 0 ? (idx + 1) % images.length : 0)));
-    }, 2000);
-    return () => clearInterval(intervalRef.current);
-  }, [images, frameCount]);
-
-  // Update frame count and indices when user changes number of frames
+  // Update frame count; the slideshow restarts with the new step size
   const handleFrameCountChange = (e) => {
     let n = parseInt(e.target.value, 10);
     if (isNaN(n) || n < 1) n = 1;
     setFrameCount(n);
-    setFrameIndices(Array(n).fill(0));
   };
 
   return (
@@ -151,61 +234,9 @@ function App() {
       </div>
       <div style={{ display: 'flex', justifyContent: 'center', gap: 24 }}>
         {Array.from({ length: frameCount }).map((_, i) => {
-          if (images.length === 0) {
-            return (
-              <div
-                key={i}
-                style={{
-                  textAlign: 'center',
-                  background: COLORS.card,
-                  borderRadius: 12,
-                  boxShadow: COLORS.shadow,
-                  border: `1px solid ${COLORS.border}`,
-                  padding: 20,
-                  minWidth: 220,
-                  position: 'relative',
-                  flex: 1,
-                  maxWidth: 320,
-                  color: COLORS.text,
-                  display: 'flex',
-                  alignItems: 'center',
-                  justifyContent: 'center',
-                  height: 240,
-                }}
-              >
-                No images found.
-              </div>
-            );
-          }
-          // Defensive: show nothing if images empty or index out of bounds
-          if (images.length === 0 || frameIndices[i] >= images.length) {
-            return (
-              <div
-                key={i}
-                style={{
-                  textAlign: 'center',
-                  background: COLORS.card,
-                  borderRadius: 12,
-                  boxShadow: COLORS.shadow,
-                  border: `1px solid ${COLORS.border}`,
-                  padding: 20,
-                  minWidth: 220,
-                  position: 'relative',
-                  flex: 1,
-                  maxWidth: 320,
-                  color: COLORS.text,
-                  display: 'flex',
-                  alignItems: 'center',
-                  justifyContent: 'center',
-                  height: 240,
-                }}
-              >
-                No images found.
-              </div>
-            );
-          }
-          // Defensive: if image is missing (stale index), show empty
-          const img = images[frameIndices[i] % images.length];
+          // Fewer images than frames, or one was just deleted: leave the frame empty
+          const img = step.images[i];
+          const meta = img && step.metadata ? step.metadata[img.id] : null;
           if (!img || !img.id) {
             return (
               <div
@@ -271,7 +302,7 @@ function App() {
                 ×
               </button>
               <img
-                src={`${API_URL}/${img.id}/file`}
+                src={frameUrls[img.id]}
                 alt={img.name}
                 style={{
                   maxWidth: '100%',
@@ -280,7 +311,9 @@ function App() {
                   border: `1px solid ${COLORS.border}`,
                   boxShadow: COLORS.shadow,
                   marginBottom: 10,
-                  background: '#f1f5f9',
+                  // Reserve the frame's final shape and show the picture's main colour until it loads
+                  background: meta?.dominantColor || '#f1f5f9',
+                  aspectRatio: meta?.width && meta?.height ? `${meta.width} / ${meta.height}` : undefined,
                   objectFit: 'cover',
                 }}
               />